@@ -0,0 +1,87 @@
+package com.group_call.call_backend.benchmark;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.CallBackendApplication;
+import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.UserRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sobe a aplicação completa contra um Redis em processo (jedis-mock) e um H2 em memória,
+ * com {@code USERS} usuários já cadastrados. Compartilhado por todos os benchmarks que
+ * precisam dos beans reais.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+
+    public static final int USERS = 2_000;
+
+    private RedisServer redisServer;
+    private ConfigurableApplicationContext context;
+    private List<Long> userIds;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+
+        context = startApplication(redisServer);
+
+        List<UserEntity> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            UserEntity user = new UserEntity();
+            user.setName("bench-" + i);
+            user.setEmail("bench-" + i + "@example.com");
+            user.setPassword("bench");
+            users.add(user);
+        }
+        userIds = bean(UserRepository.class).saveAll(users).stream().map(UserEntity::getId).toList();
+    }
+
+    /**
+     * Sobe a aplicação contra o Redis informado; {@code extraArgs} sobrescreve ou completa
+     * a configuração padrão dos benchmarks.
+     */
+    static ConfigurableApplicationContext startApplication(RedisServer redisServer, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.data.redis.url=redis://" + redisServer.getHost() + ":" + redisServer.getBindPort(),
+                // Os mesmos usuários são pareados a cada iteração; com rotação de 1 ms o
+                // filtro de parceiros recentes é consultado mas nunca os bloqueia.
+                "--matchmaking.recent-partners.rotation-ms=1",
+                // As confirmações só chegam depois que a fila inteira foi drenada.
+                "--matchmaking.reservation.lease-ms=600000",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(CallBackendApplication.class).run(args.toArray(String[]::new));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        context.close();
+        redisServer.stop();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public List<Long> userIds() {
+        return userIds;
+    }
+}
@@ -0,0 +1,181 @@
+package com.group_call.call_backend.benchmark;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.security.JwtTokenProvider;
+import com.group_call.call_backend.service.WebSocketBroadcastService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Vazão de ponta a ponta do {@link WebSocketBroadcastService} com {@code sessions} sessões
+ * STOMP simuladas, do envio até o frame MESSAGE no canal de saída. As sessões passam pelo
+ * canal de entrada real (CONNECT com JWT e SUBSCRIBE em {@code /user/queue/chat}), então o
+ * broker e a resolução de destinos de usuário são os de produção.
+ * <p>
+ * {@code relay} precisa do RabbitMQ com STOMP em {@code localhost:61613}
+ * ({@code docker-compose --profile relay up -d rabbitmq}); sem ele rode só
+ * {@code -p broker=simple}.
+ */
+@State(Scope.Benchmark)
+@Fork(3)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BrokerThroughputBenchmark {
+
+    private static final int BATCH = 1_000;
+    private static final long DELIVERY_TIMEOUT_MS = 60_000;
+
+    @Param({"simple", "relay"})
+    private String broker;
+
+    @Param({"10000"})
+    private int sessions;
+
+    private RedisServer redisServer;
+    private ConfigurableApplicationContext context;
+    private WebSocketBroadcastService broadcastService;
+    private SubscribableChannel outboundChannel;
+    private MessageHandler deliveryCounter;
+    private final AtomicLong delivered = new AtomicLong();
+    private final Set<String> reached = ConcurrentHashMap.newKeySet();
+    private Map<String, Object> payload;
+    private long sent;
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        context = BenchmarkContext.startApplication(redisServer, "--websocket.broker=" + broker);
+        broadcastService = context.getBean(WebSocketBroadcastService.class);
+        outboundChannel = context.getBean("clientOutboundChannel", SubscribableChannel.class);
+        SubscribableChannel inboundChannel = context.getBean("clientInboundChannel", SubscribableChannel.class);
+        JwtTokenProvider tokenProvider = context.getBean(JwtTokenProvider.class);
+
+        // Nenhuma sessão existe de fato: o SubProtocolWebSocketHandler descarta os frames
+        // e este handler conta o que chegaria ao socket.
+        deliveryCounter = message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                reached.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+                delivered.incrementAndGet();
+            }
+        };
+        outboundChannel.subscribe(deliveryCounter);
+
+        for (int i = 1; i <= sessions; i++) {
+            long userId = i;
+            String sessionId = "bench-" + i;
+            Principal user = () -> Long.toString(userId);
+
+            StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+            connect.setSessionId(sessionId);
+            connect.setAcceptVersion("1.2");
+            connect.setHeartbeat(0, 0);
+            connect.addNativeHeader("Authorization",
+                    "Bearer " + tokenProvider.generateToken(userId, "bench-" + i + "@example.com"));
+            connect.setLeaveMutable(true);
+            inboundChannel.send(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            // O StompSubProtocolHandler publicaria o evento ao receber o CONNECTED
+            StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+            connected.setSessionId(sessionId);
+            context.publishEvent(new SessionConnectedEvent(this,
+                    MessageBuilder.createMessage(new byte[0], connected.getMessageHeaders()), user));
+
+            StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination("/user/queue/chat");
+            subscribe.setUser(user);
+            inboundChannel.send(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        payload = Map.of("type", "CHAT_MESSAGE", "message", "x".repeat(64));
+        awaitAllSubscribed();
+        System.out.printf("%nbroker=%s: %d sessões inscritas%n", broker, reached.size());
+    }
+
+    /**
+     * As inscrições são processadas em paralelo pelo canal de entrada (e, no relay, pelo
+     * broker); reenvia aos usuários que ainda não receberam nada até todos receberem.
+     */
+    private void awaitAllSubscribed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+        while (reached.size() < sessions) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Só " + reached.size() + " de " + sessions + " sessões inscritas");
+            }
+            for (int i = 1; i <= sessions; i++) {
+                if (!reached.contains("bench-" + i)) {
+                    broadcastService.broadcastChatMessage((long) i, payload);
+                }
+            }
+            Thread.sleep(500);
+        }
+        // Espera as sondas repetidas da última rodada antes de fixar a contagem
+        Thread.sleep(1_000);
+        sent = delivered.get();
+    }
+
+    private void awaitDelivered(long target) {
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+        while (delivered.get() < target) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Entregues " + delivered.get() + " de " + target);
+            }
+            // Sem spin: com poucos núcleos ele tiraria CPU do executor de saída
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        outboundChannel.unsubscribe(deliveryCounter);
+        context.close();
+        redisServer.stop();
+    }
+
+    /**
+     * Envia um lote a usuários distintos e espera todos os frames chegarem ao canal de saída.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void deliver() {
+        for (int i = 0; i < BATCH; i++) {
+            nextUser = nextUser % sessions + 1;
+            broadcastService.broadcastChatMessage((long) nextUser, payload);
+        }
+        sent += BATCH;
+        awaitDelivered(sent);
+    }
+}
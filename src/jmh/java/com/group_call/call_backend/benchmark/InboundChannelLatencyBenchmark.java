@@ -0,0 +1,114 @@
+package com.group_call.call_backend.benchmark;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latência de um frame de sinalização no canal de entrada STOMP enquanto
+ * {@code slowSessions} sessões estão presas em consultas lentas de {@code queryMs}
+ * (simuladas com sleep), com e sem virtual threads. Usa o canal e o executor reais
+ * configurados pelo {@code WebSocketConfig}; cada sessão lenta reenvia o próximo frame
+ * assim que o anterior termina.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InboundChannelLatencyBenchmark {
+
+    private static final String BENCHMARK_HEADER = "benchmark";
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    @Param({"64"})
+    private int slowSessions;
+
+    @Param({"20"})
+    private long queryMs;
+
+    private RedisServer redisServer;
+    private ConfigurableApplicationContext context;
+    private SubscribableChannel inboundChannel;
+    private MessageHandler benchmarkHandler;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        context = BenchmarkContext.startApplication(redisServer,
+                "--spring.threads.virtual.enabled=" + virtualThreads);
+        inboundChannel = context.getBean("clientInboundChannel", SubscribableChannel.class);
+        Object executor = context.getBean("clientInboundChannelExecutor");
+        System.out.printf("%nvirtualThreads=%s: %s%n", virtualThreads,
+                executor instanceof ThreadPoolTaskExecutor pool ? pool.getThreadNamePrefix() + " " + pool.getCorePoolSize() + " threads" : executor);
+
+        // Os demais handlers do canal ignoram mensagens sem destino nem tipo STOMP
+        benchmarkHandler = message -> {
+            if (message.getHeaders().containsKey(BENCHMARK_HEADER) && message.getPayload() instanceof Runnable task) {
+                task.run();
+            }
+        };
+        inboundChannel.subscribe(benchmarkHandler);
+
+        running = true;
+        for (int i = 0; i < slowSessions; i++) {
+            sendSlowQuery();
+        }
+    }
+
+    private void sendSlowQuery() {
+        send(() -> {
+            try {
+                Thread.sleep(queryMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (running) {
+                sendSlowQuery();
+            }
+        });
+    }
+
+    private void send(Runnable task) {
+        inboundChannel.send(MessageBuilder.withPayload(task).setHeader(BENCHMARK_HEADER, true).build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        running = false;
+        Thread.sleep(queryMs * 2);
+        inboundChannel.unsubscribe(benchmarkHandler);
+        context.close();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public Object signal() throws Exception {
+        CompletableFuture<Object> handled = new CompletableFuture<>();
+        send(() -> handled.complete(Boolean.TRUE));
+        return handled.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,98 @@
+package com.group_call.call_backend.benchmark;
+
+import com.group_call.call_backend.service.MatchmakingService;
+import com.group_call.call_backend.service.MatchmakingWorker;
+import com.group_call.call_backend.service.QueueShard;
+import com.group_call.call_backend.service.RedisMatchmakingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pareamento de ponta a ponta: entrada na fila pelo {@link MatchmakingService}, ciclo do
+ * {@link MatchmakingWorker}, confirmação da proposta pelos dois usuários e gravação das
+ * chamadas no H2.
+ * <ul>
+ *   <li>{@code matchThroughput}: pares formados por segundo com a fila cheia;</li>
+ *   <li>{@code timeToMatch}: distribuição (p50/p99/p999) do tempo entre a entrada de dois
+ *   usuários e ambos estarem em chamada, incluindo o despertar do worker e a confirmação
+ *   imediata dos dois lados.</li>
+ * </ul>
+ * Rode com {@code -prof gc} (padrão de {@code jmh.args}) para a taxa de alocação.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MatchmakingBenchmark {
+
+    private static final int PAIRS = 500;
+
+    private MatchmakingService matchmakingService;
+    private MatchmakingWorker matchmakingWorker;
+    private RedisMatchmakingService redisMatchmaking;
+    private List<Long> userIds;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkContext context) {
+        matchmakingService = context.bean(MatchmakingService.class);
+        matchmakingWorker = context.bean(MatchmakingWorker.class);
+        redisMatchmaking = context.bean(RedisMatchmakingService.class);
+        userIds = context.userIds().subList(0, PAIRS * 2);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        redisMatchmaking.clearAllMatchmakingData();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(PAIRS)
+    public long matchThroughput() throws InterruptedException {
+        for (Long userId : userIds) {
+            matchmakingService.joinQueue(userId, QueueShard.DEFAULT, Set.of());
+        }
+        while (redisMatchmaking.getQueueSize() > 0) {
+            matchmakingWorker.matchBatch();
+        }
+        for (Long userId : userIds) {
+            redisMatchmaking.getReservationId(userId)
+                    .ifPresent(reservationId -> matchmakingService.acceptMatch(userId, reservationId));
+        }
+        return redisMatchmaking.getQueueSize();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean timeToMatch() {
+        Long first = userIds.get(0);
+        Long second = userIds.get(1);
+        matchmakingService.joinQueue(first, QueueShard.DEFAULT, Set.of());
+        matchmakingService.joinQueue(second, QueueShard.DEFAULT, Set.of());
+
+        Optional<Long> reservationId;
+        while ((reservationId = redisMatchmaking.getReservationId(first)).isEmpty()) {
+            Thread.onSpinWait();
+        }
+        matchmakingService.acceptMatch(first, reservationId.get());
+        matchmakingService.acceptMatch(second, reservationId.get());
+        return redisMatchmaking.isUserInCall(first) && redisMatchmaking.isUserInCall(second);
+    }
+}
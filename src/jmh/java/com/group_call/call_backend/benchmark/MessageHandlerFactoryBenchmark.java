@@ -0,0 +1,55 @@
+package com.group_call.call_backend.benchmark;
+
+import com.group_call.call_backend.websocket.handler.MessageHandlerFactory;
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Despacho de mensagens recebidas pelo canal Redis até o broker STOMP local, por tipo de
+ * mensagem. O destinatário não tem sessão aberta, então o custo medido é o da busca do
+ * handler e da conversão da mensagem.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageHandlerFactoryBenchmark {
+
+    @Param({"CHAT_MESSAGE", "TYPING_INDICATOR", "WEBRTC_SIGNAL", "MATCH_PROPOSED", "MATCH_FOUND", "CALL_ENDED", "ERROR"})
+    private WebSocketMessageType messageType;
+
+    private MessageHandlerFactory messageHandlerFactory;
+    private SimpMessagingTemplate messagingTemplate;
+    private WebSocketMessage message;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkContext context) {
+        messageHandlerFactory = context.bean(MessageHandlerFactory.class);
+        messagingTemplate = context.bean(SimpMessagingTemplate.class);
+        message = new WebSocketMessage(messageType, context.userIds().get(0), "/queue/benchmark",
+                Map.of("type", messageType.name(), "data", "x".repeat(64)));
+    }
+
+    @Benchmark
+    public void processMessage() {
+        messageHandlerFactory.processMessage(message, messagingTemplate);
+    }
+}
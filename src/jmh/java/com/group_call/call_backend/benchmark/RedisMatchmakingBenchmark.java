@@ -0,0 +1,98 @@
+package com.group_call.call_backend.benchmark;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.service.QueueShard;
+import com.group_call.call_backend.service.RedisMatchmakingService;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operações isoladas do {@link RedisMatchmakingService} contra o jedis-mock, sem Spring
+ * nem banco. Os números absolutos refletem o servidor em processo; servem para comparar
+ * versões dos scripts e da quantidade de idas ao Redis.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RedisMatchmakingBenchmark {
+
+    private static final int WINDOW_SIZE = 500;
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private long nextUserId;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillQueue() {
+        redisMatchmaking.clearAllMatchmakingData();
+        for (long userId = 1; userId <= WINDOW_SIZE; userId++) {
+            redisMatchmaking.joinQueue(userId, QueueShard.DEFAULT, Set.of());
+        }
+        nextUserId = 1_000_000;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public void joinAndLeave() {
+        Long userId = nextUserId++;
+        redisMatchmaking.joinQueue(userId, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.leaveQueue(userId);
+    }
+
+    @Benchmark
+    public List<QueuedUser> peekWindow() {
+        return redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE);
+    }
+
+    @Benchmark
+    public List<QueuedUser[]> joinAndClaimPair() {
+        Long first = nextUserId++;
+        Long second = nextUserId++;
+        redisMatchmaking.joinQueue(first, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.joinQueue(second, QueueShard.DEFAULT, Set.of());
+        return redisMatchmaking.claimPairs(QueueShard.DEFAULT,
+                List.<QueuedUser[]>of(new QueuedUser[]{new QueuedUser(first, 0L), new QueuedUser(second, 0L)}));
+    }
+}
@@ -0,0 +1,80 @@
+package com.group_call.call_backend.benchmark;
+
+import com.group_call.call_backend.websocket.message.JacksonWebSocketMessageCodec;
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageCodec;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de codificar e decodificar as mensagens trocadas entre instâncias, por tipo e por
+ * codec. O tamanho de cada mensagem codificada é impresso no início da execução, para
+ * comparar os bytes publicados no Redis.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebSocketMessageCodecBenchmark {
+
+    @Param({"CHAT_MESSAGE", "TYPING_INDICATOR", "WEBRTC_SIGNAL", "MATCH_PROPOSED", "MATCH_FOUND", "CALL_ENDED", "ERROR"})
+    private WebSocketMessageType messageType;
+
+    @Param({"json", "smile"})
+    private String codecName;
+
+    private WebSocketMessageCodec codec;
+    private WebSocketMessage message;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = new JacksonWebSocketMessageCodec(codecName);
+        message = new WebSocketMessage(messageType, 42L, "/queue/benchmark", payload(messageType));
+        encoded = codec.encode(message);
+        System.out.printf("%n%s %s: %d bytes%n", codecName, messageType, encoded.length);
+    }
+
+    private static Map<String, Object> payload(WebSocketMessageType messageType) {
+        return switch (messageType) {
+            case CHAT_MESSAGE -> Map.of("callId", 1234L, "senderId", 41L, "senderName", "Maria Silva",
+                    "message", "Oi! Tudo bem? De onde você fala?", "timestamp", "2025-01-01T12:00:00");
+            case TYPING_INDICATOR -> Map.of("callId", 1234L, "userId", 41L, "userName", "Maria Silva",
+                    "isTyping", true);
+            case WEBRTC_SIGNAL -> Map.of("type", "offer", "fromUserId", 41L, "toUserId", 42L,
+                    "data", Map.of("type", "offer", "sdp", "v=0\r\no=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n".repeat(24)));
+            case MATCH_PROPOSED -> Map.of("reservationId", 987654L, "peerId", 41L, "peerName", "Maria Silva",
+                    "expiresInMs", 10000L);
+            case MATCH_FOUND -> Map.of("callId", 1234L, "peerId", 41L, "peerName", "Maria Silva",
+                    "isInitiator", true);
+            case CALL_ENDED -> Map.of("callId", 1234L, "reason", "partner_left");
+            case ERROR -> Map.of("error", "Chamada não encontrada");
+        };
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(message);
+    }
+
+    @Benchmark
+    public WebSocketMessage decode() {
+        return codec.decode(encoded);
+    }
+}
@@ -0,0 +1,76 @@
+package com.group_call.call_backend.benchmark;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageFactory;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de criar uma mensagem e consultar o destinatário duas vezes (registro de usuários
+ * e envio ao broker), como no caminho local de entrega. {@code legacy} reproduz a criação
+ * anterior (UUID, {@code LocalDateTime}, variável de ambiente e hostname a cada mensagem);
+ * rode com {@code -prof gc} e compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebSocketMessageFactoryBenchmark {
+
+    private WebSocketMessageFactory messageFactory;
+    private Map<String, Object> payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messageFactory = new WebSocketMessageFactory("node-a");
+        payload = Map.of("callId", 1234L, "userId", 41L, "userName", "Maria Silva", "isTyping", true);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        WebSocketMessage message = new WebSocketMessage(WebSocketMessageType.TYPING_INDICATOR, 42L, "/queue/typing",
+                payload);
+        message.setServerId(legacyServerIdentifier());
+        blackhole.consume(message.getTargetUserId().toString());
+        blackhole.consume(message.getTargetUserId().toString());
+        blackhole.consume(message);
+    }
+
+    @Benchmark
+    public void factory(Blackhole blackhole) {
+        WebSocketMessage message = messageFactory.create(WebSocketMessageType.TYPING_INDICATOR, 42L, "/queue/typing",
+                payload);
+        blackhole.consume(message.getTargetUserName());
+        blackhole.consume(message.getTargetUserName());
+        blackhole.consume(message);
+    }
+
+    private static String legacyServerIdentifier() {
+        String flyMachineId = System.getenv("FLY_MACHINE_ID");
+        if (flyMachineId != null && !flyMachineId.isEmpty()) {
+            return flyMachineId;
+        }
+
+        try {
+            return java.net.InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.group_call.call_backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CallBackendApplication {
 
 	public static void main(String[] args) {
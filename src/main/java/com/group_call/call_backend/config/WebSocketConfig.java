@@ -1,39 +1,190 @@
 package com.group_call.call_backend.config;
 
+import com.group_call.call_backend.websocket.OutboundBackpressureInterceptor;
+import com.group_call.call_backend.websocket.PresenceChannelInterceptor;
 import com.group_call.call_backend.websocket.WebSocketAuthInterceptor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    /** Virtual threads simultâneas por CPU em cada canal quando o pool-size é 0. */
+    private static final int VIRTUAL_THREADS_PER_CPU = 64;
+
     private final WebSocketAuthInterceptor authInterceptor;
+    private final PresenceChannelInterceptor presenceInterceptor;
+    private final OutboundBackpressureInterceptor backpressureInterceptor;
+    private final TaskScheduler brokerTaskScheduler;
+    private final long heartbeatMs;
+    private final int sendTimeLimitMs;
+    private final int sendBufferSizeLimit;
+    private final int messageSizeLimit;
+    private final int inboundPoolSize;
+    private final int outboundPoolSize;
+    private final boolean virtualThreads;
+    private final String broker;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayLogin;
+    private final String relayPasscode;
 
-    public WebSocketConfig(WebSocketAuthInterceptor authInterceptor) {
+    public WebSocketConfig(WebSocketAuthInterceptor authInterceptor,
+            PresenceChannelInterceptor presenceInterceptor,
+            OutboundBackpressureInterceptor backpressureInterceptor,
+            @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler brokerTaskScheduler,
+            @Value("${websocket.heartbeat-ms:10000}") long heartbeatMs,
+            @Value("${websocket.session.send-time-limit-ms:5000}") int sendTimeLimitMs,
+            @Value("${websocket.session.send-buffer-size-limit:262144}") int sendBufferSizeLimit,
+            @Value("${websocket.session.message-size-limit:65536}") int messageSizeLimit,
+            @Value("${websocket.inbound.pool-size:0}") int inboundPoolSize,
+            @Value("${websocket.outbound.pool-size:0}") int outboundPoolSize,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${websocket.broker:simple}") String broker,
+            @Value("${websocket.relay.host:localhost}") String relayHost,
+            @Value("${websocket.relay.port:61613}") int relayPort,
+            @Value("${websocket.relay.login:guest}") String relayLogin,
+            @Value("${websocket.relay.passcode:guest}") String relayPasscode) {
         this.authInterceptor = authInterceptor;
+        this.presenceInterceptor = presenceInterceptor;
+        this.backpressureInterceptor = backpressureInterceptor;
+        this.brokerTaskScheduler = brokerTaskScheduler;
+        this.heartbeatMs = heartbeatMs;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+        this.messageSizeLimit = messageSizeLimit;
+        this.inboundPoolSize = inboundPoolSize;
+        this.outboundPoolSize = outboundPoolSize;
+        this.virtualThreads = virtualThreads;
+        this.broker = broker;
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayLogin = relayLogin;
+        this.relayPasscode = relayPasscode;
+    }
+
+    /**
+     * O broker em memória guarda em cache as inscrições de cada destino, por padrão só de
+     * 1024 destinos. Cada sessão tem os próprios destinos de usuário
+     * ({@code /queue/chat-user<sessionId>}), e acima disso cada envio percorre todas as
+     * inscrições: com 10 mil sessões a vazão cai para algumas centenas de mensagens por
+     * segundo (ver {@code BrokerThroughputBenchmark}).
+     */
+    @Bean
+    static BeanPostProcessor simpleBrokerCacheLimit(
+            @Value("${websocket.simple-broker.cache-limit:65536}") int cacheLimit) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler handler) {
+                    handler.setCacheLimit(cacheLimit);
+                }
+                return bean;
+            }
+        };
     }
 
+    /**
+     * {@code websocket.broker=relay} troca o broker em memória por um broker STOMP externo
+     * (RabbitMQ com o plugin STOMP, ver {@code docker-compose.yml}). O registro de
+     * usuários e os destinos de usuário não resolvidos são publicados no broker, para que
+     * {@code /user/...} alcance sessões de qualquer instância.
+     * <p>
+     * As mensagens para uma mesma sessão saem na ordem em que foram publicadas: os frames
+     * de sinalização WebRTC (offer, answer, candidates) não podem se inverter no caminho.
+     */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equals(broker)) {
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            // Os heartbeats mantêm a presença renovada enquanto o cliente está ocioso.
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                    .setTaskScheduler(brokerTaskScheduler);
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        config.setPreservePublishOrder(true);
     }
 
+    /**
+     * Os frames recebidos de uma sessão são processados na ordem de chegada, mesmo com o
+     * canal de entrada rodando em várias threads.
+     */
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
 
+    /**
+     * Um envio que passa de {@code websocket.session.send-time-limit-ms} com o buffer da
+     * sessão acima de {@code websocket.session.send-buffer-size-limit} derruba a sessão; o
+     * limite por mensagens fica no {@link OutboundBackpressureInterceptor}.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(backpressureInterceptor);
+    }
+
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(authInterceptor);
+        registration.interceptors(authInterceptor, presenceInterceptor);
+        configureExecutor(registration, "ws-inbound-", inboundPoolSize);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(backpressureInterceptor);
+        configureExecutor(registration, "ws-outbound-", outboundPoolSize);
+    }
+
+    /**
+     * Com {@code spring.threads.virtual.enabled} cada mensagem do canal roda em uma
+     * virtual thread, e um handler bloqueado no banco ou no Redis não segura os demais.
+     * O número de virtual threads simultâneas fica limitado a {@code poolSize} (0 usa
+     * {@value #VIRTUAL_THREADS_PER_CPU} por CPU); acima disso quem publica espera.
+     * Sem virtual threads, um pool fixo de {@code poolSize} threads; 0 mantém o padrão do
+     * Spring (2 threads por CPU).
+     */
+    private void configureExecutor(ChannelRegistration registration, String threadNamePrefix, int poolSize) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(poolSize > 0
+                    ? poolSize
+                    : Runtime.getRuntime().availableProcessors() * VIRTUAL_THREADS_PER_CPU);
+            registration.executor(executor);
+        } else if (poolSize > 0) {
+            registration.taskExecutor().corePoolSize(poolSize).maxPoolSize(poolSize);
+        }
     }
 }
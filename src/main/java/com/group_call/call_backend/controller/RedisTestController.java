@@ -1,6 +1,6 @@
 package com.group_call.call_backend.controller;
 
-import com.group_call.call_backend.service.RedisWebSocketBroadcastService;
+import com.group_call.call_backend.service.WebSocketBroadcastService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -17,9 +17,9 @@ import java.util.Map;
 public class RedisTestController {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisTestController.class);
-    private final RedisWebSocketBroadcastService redisService;
+    private final WebSocketBroadcastService redisService;
 
-    public RedisTestController(RedisWebSocketBroadcastService redisService) {
+    public RedisTestController(WebSocketBroadcastService redisService) {
         this.redisService = redisService;
     }
 
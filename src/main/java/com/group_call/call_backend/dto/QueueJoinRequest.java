@@ -0,0 +1,12 @@
+package com.group_call.call_backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class QueueJoinRequest {
+    private String callType;
+    private String locale;
+    private List<String> interests;
+}
@@ -9,7 +9,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "calls")
+@Table(name = "calls", indexes = {
+        @Index(name = "idx_calls_user1_status", columnList = "user1_id, status"),
+        @Index(name = "idx_calls_user2_status", columnList = "user2_id, status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
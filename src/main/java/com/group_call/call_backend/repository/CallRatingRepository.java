@@ -25,6 +25,12 @@ public interface CallRatingRepository extends JpaRepository<CallRatingEntity, Lo
     @Query("SELECT AVG(cr.rating) FROM CallRatingEntity cr WHERE cr.call.user1 = :user OR cr.call.user2 = :user")
     Double getAverageRatingForUser(@Param("user") UserEntity user);
 
+    @Query("SELECT c.user2.id, SUM(cr.rating), COUNT(cr) FROM CallRatingEntity cr JOIN cr.call c WHERE cr.rater = c.user1 GROUP BY c.user2.id")
+    List<Object[]> sumRatingsReceivedAsUser2();
+
+    @Query("SELECT c.user1.id, SUM(cr.rating), COUNT(cr) FROM CallRatingEntity cr JOIN cr.call c WHERE cr.rater = c.user2 GROUP BY c.user1.id")
+    List<Object[]> sumRatingsReceivedAsUser1();
+
     List<CallRatingEntity> findByRatingGreaterThanEqual(Integer rating);
 
     @Query("SELECT cr FROM CallRatingEntity cr JOIN FETCH cr.rater JOIN FETCH cr.call c JOIN FETCH c.user1 JOIN FETCH c.user2")
@@ -2,13 +2,18 @@ package com.group_call.call_backend.repository;
 
 import com.group_call.call_backend.entity.CallEntity;
 import com.group_call.call_backend.entity.UserEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CallRepository extends JpaRepository<CallEntity, Long> {
@@ -23,9 +28,30 @@ public interface CallRepository extends JpaRepository<CallEntity, Long> {
     @Query("SELECT c FROM CallEntity c JOIN FETCH c.user1 JOIN FETCH c.user2")
     List<CallEntity> findAllWithUsers();
 
+    @Query("SELECT c FROM CallEntity c JOIN FETCH c.user1 JOIN FETCH c.user2 WHERE c.id = :id")
+    Optional<CallEntity> findByIdWithUsers(@Param("id") Long id);
+
     @Query("SELECT c FROM CallEntity c JOIN FETCH c.user1 JOIN FETCH c.user2 WHERE (c.user1 = :user OR c.user2 = :user) AND c.status = :status")
     List<CallEntity> findByUserAndStatus(@Param("user") UserEntity user, @Param("status") CallEntity.CallStatus status);
 
+    @Query("SELECT c FROM CallEntity c JOIN FETCH c.user1 JOIN FETCH c.user2 WHERE (c.user1.id = :userId OR c.user2.id = :userId) AND c.status = :status ORDER BY c.startedAt DESC")
+    List<CallEntity> findByUserIdAndStatus(@Param("userId") Long userId, @Param("status") CallEntity.CallStatus status);
+
+    @Query("SELECT c.id, c.user1.id, c.user2.id FROM CallEntity c WHERE c.status = :status AND c.startedAt < :startedBefore AND c.id > :afterId ORDER BY c.id")
+    List<Object[]> findParticipantsByStatusStartedBefore(@Param("status") CallEntity.CallStatus status,
+            @Param("startedBefore") LocalDateTime startedBefore, @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Encerra em um único UPDATE as chamadas informadas que ainda estão ativas, sem
+     * carregar as entidades. Retorna quantas foram encerradas.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CallEntity c SET c.status = com.group_call.call_backend.entity.CallEntity.CallStatus.COMPLETED, "
+            + "c.endedAt = :endedAt, c.durationSeconds = cast((:endedAt - c.startedAt) by second as Integer) "
+            + "WHERE c.id IN :ids AND c.status = com.group_call.call_backend.entity.CallEntity.CallStatus.ACTIVE")
+    int completeActiveCalls(@Param("ids") Collection<Long> ids, @Param("endedAt") LocalDateTime endedAt);
+
     @Query("SELECT c FROM CallEntity c JOIN FETCH c.user1 JOIN FETCH c.user2 WHERE (c.user1 = :user OR c.user2 = :user) AND c.startedAt BETWEEN :startDate AND :endDate")
     List<CallEntity> findByUserAndDateRange(@Param("user") UserEntity user, @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 }
@@ -2,8 +2,13 @@ package com.group_call.call_backend.repository;
 
 import com.group_call.call_backend.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +17,9 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
     Optional<UserEntity> findByEmail(String email);
 
     boolean existsByEmail(String email);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserEntity u SET u.isOnline = :online WHERE u.id IN :ids")
+    int updateOnlineStatus(@Param("ids") Collection<Long> ids, @Param("online") boolean online);
 }
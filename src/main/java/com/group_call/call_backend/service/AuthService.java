@@ -14,14 +14,17 @@ public class AuthService {
     private final JwtTokenProvider tokenProvider;
     private final BCryptPasswordEncoder passwordEncoder;
     private final MatchmakingService matchmakingService;
+    private final PresenceService presenceService;
 
     public AuthService(UserRepository userRepository,
             JwtTokenProvider tokenProvider,
-            @Lazy MatchmakingService matchmakingService) {
+            @Lazy MatchmakingService matchmakingService,
+            PresenceService presenceService) {
         this.userRepository = userRepository;
         this.tokenProvider = tokenProvider;
         this.passwordEncoder = new BCryptPasswordEncoder();
         this.matchmakingService = matchmakingService;
+        this.presenceService = presenceService;
     }
 
     public UserEntity signup(String name, String email, String password) {
@@ -50,9 +53,6 @@ public class AuthService {
             throw new IllegalStateException("Usuário inativo");
         }
 
-        user.setIsOnline(true);
-        userRepository.save(user);
-
         return tokenProvider.generateToken(user.getId(), user.getEmail());
     }
 
@@ -62,8 +62,9 @@ public class AuthService {
     }
 
     public void logout(Long userId) {
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Usuário não encontrado"));
+        if (!userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("Usuário não encontrado");
+        }
 
         try {
             matchmakingService.cleanupUserOnDisconnect(userId);
@@ -71,7 +72,6 @@ public class AuthService {
             // Log error
         }
 
-        user.setIsOnline(false);
-        userRepository.save(user);
+        presenceService.loggedOut(userId);
     }
 }
@@ -0,0 +1,39 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.handler.MessageHandlerFactory;
+import com.group_call.call_backend.websocket.message.WebSocketMessageFactory;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Entrega pelo broker STOMP externo: a mensagem vai ao broker, que a repassa à instância
+ * onde o usuário está inscrito. Os destinos de usuário são resolvidos entre instâncias
+ * pelo registro de usuários que o Spring publica no próprio broker.
+ */
+@Service
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "relay")
+public class BrokerRelayBroadcastService implements WebSocketBroadcastService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageHandlerFactory messageHandlerFactory;
+    private final WebSocketMessageFactory messageFactory;
+
+    public BrokerRelayBroadcastService(SimpMessagingTemplate messagingTemplate,
+            MessageHandlerFactory messageHandlerFactory,
+            WebSocketMessageFactory messageFactory) {
+        this.messagingTemplate = messagingTemplate;
+        this.messageHandlerFactory = messageHandlerFactory;
+        this.messageFactory = messageFactory;
+    }
+
+    @Override
+    public void broadcast(WebSocketMessageType messageType, Long targetUserId, String destination,
+            Map<String, Object> payload) {
+        messageHandlerFactory.processMessage(messageFactory.create(messageType, targetUserId, destination, payload),
+                messagingTemplate);
+    }
+}
@@ -0,0 +1,153 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache limitado (LRU) dos participantes das chamadas ativas, usado pelo chat e pelo
+ * indicador de digitação para não consultar o banco a cada mensagem. A instância que
+ * cria a chamada a coloca no cache; as demais carregam na primeira consulta. Ao encerrar
+ * uma chamada, a entrada é removida aqui e nas demais instâncias pelo canal Redis
+ * {@value #CHANNEL}.
+ */
+@Component
+public class CallParticipantCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallParticipantCache.class);
+    private static final String CHANNEL = "calls:ended";
+
+    private final CallRepository callRepository;
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final Map<Long, CallParticipants> calls;
+
+    /**
+     * Participantes de uma chamada ativa.
+     */
+    public record CallParticipants(Long callId, Long user1Id, String user1Name, Long user2Id, String user2Name) {
+
+        public boolean includes(Long userId) {
+            return user1Id.equals(userId) || user2Id.equals(userId);
+        }
+
+        public Long partnerOf(Long userId) {
+            return user1Id.equals(userId) ? user2Id : user1Id;
+        }
+
+        public String nameOf(Long userId) {
+            return user1Id.equals(userId) ? user1Name : user2Name;
+        }
+    }
+
+    public CallParticipantCache(CallRepository callRepository,
+            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            RedisMessageListenerContainer redisMessageListenerContainer,
+            @Value("${calls.participant-cache.max-calls:50000}") int maxCalls) {
+        this.callRepository = callRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.calls = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CallParticipants> eldest) {
+                return size() > maxCalls;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                for (String callId : new String(message.getBody(), StandardCharsets.UTF_8).split(",")) {
+                    remove(Long.parseLong(callId));
+                }
+            } catch (Exception e) {
+                logger.error("Erro ao processar chamada encerrada: {}", e.getMessage());
+            }
+        }, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Registra uma chamada recém-criada. Os usuários precisam estar carregados.
+     */
+    public CallParticipants put(CallEntity call) {
+        CallParticipants participants = new CallParticipants(call.getId(),
+                call.getUser1().getId(), call.getUser1().getName(),
+                call.getUser2().getId(), call.getUser2().getName());
+        synchronized (calls) {
+            calls.put(call.getId(), participants);
+        }
+        return participants;
+    }
+
+    /**
+     * Participantes da chamada, ou vazio se ela não existe ou não está mais ativa.
+     */
+    public Optional<CallParticipants> get(Long callId) {
+        synchronized (calls) {
+            CallParticipants participants = calls.get(callId);
+            if (participants != null) {
+                return Optional.of(participants);
+            }
+        }
+
+        return callRepository.findByIdWithUsers(callId)
+                .filter(call -> call.getStatus() == CallEntity.CallStatus.ACTIVE)
+                .map(this::put);
+    }
+
+    /**
+     * Remove a chamada encerrada daqui e das demais instâncias.
+     */
+    public void evict(Long callId) {
+        remove(callId);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, callId.toString());
+        } catch (Exception e) {
+            logger.warn("Falha ao replicar encerramento da chamada callId={}: {}", callId, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove várias chamadas encerradas com uma única mensagem para as demais instâncias.
+     */
+    public void evictAll(Collection<Long> callIds) {
+        if (callIds.isEmpty()) {
+            return;
+        }
+        StringBuilder body = new StringBuilder(callIds.size() * 8);
+        for (Long callId : callIds) {
+            remove(callId);
+            if (body.length() > 0) {
+                body.append(',');
+            }
+            body.append(callId);
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, body.toString());
+        } catch (Exception e) {
+            logger.warn("Falha ao replicar encerramento de chamadas: {}", e.getMessage());
+        }
+    }
+
+    private void remove(Long callId) {
+        synchronized (calls) {
+            calls.remove(callId);
+        }
+    }
+}
@@ -14,12 +14,14 @@ public class CallRatingService {
     private final CallRatingRepository callRatingRepository;
     private final CallService callService;
     private final UserService userService;
+    private final ReputationService reputationService;
 
     public CallRatingService(CallRatingRepository callRatingRepository,
-            CallService callService, UserService userService) {
+            CallService callService, UserService userService, ReputationService reputationService) {
         this.callRatingRepository = callRatingRepository;
         this.callService = callService;
         this.userService = userService;
+        this.reputationService = reputationService;
     }
 
     public CallRatingEntity createRating(Long callId, Long raterId, Integer rating, String comment) {
@@ -48,7 +50,9 @@ public class CallRatingService {
         callRating.setRating(rating);
         callRating.setComment(comment);
 
-        return callRatingRepository.save(callRating);
+        CallRatingEntity saved = callRatingRepository.save(callRating);
+        reputationService.addRating(ratedUserId(saved), rating);
+        return saved;
     }
 
     public CallRatingEntity findById(Long id) {
@@ -69,6 +73,7 @@ public class CallRatingService {
 
     public CallRatingEntity updateRating(Long ratingId, Integer newRating, String newComment) {
         CallRatingEntity rating = findById(ratingId);
+        int oldRating = rating.getRating();
 
         if (newRating != null) {
             if (newRating < 1 || newRating > 5) {
@@ -81,14 +86,15 @@ public class CallRatingService {
             rating.setComment(newComment);
         }
 
-        return callRatingRepository.save(rating);
+        CallRatingEntity saved = callRatingRepository.save(rating);
+        reputationService.changeRating(ratedUserId(saved), oldRating, saved.getRating());
+        return saved;
     }
 
     public void deleteRating(Long ratingId) {
-        if (!callRatingRepository.existsById(ratingId)) {
-            throw new IllegalArgumentException("Avaliação não encontrada com ID: " + ratingId);
-        }
+        CallRatingEntity rating = findById(ratingId);
         callRatingRepository.deleteById(ratingId);
+        reputationService.removeRating(ratedUserId(rating), rating.getRating());
     }
 
     public List<CallRatingEntity> findTopRatings() {
@@ -98,4 +104,10 @@ public class CallRatingService {
     public List<CallRatingEntity> findPositiveRatings() {
         return findByRatingGreaterThanEqual(4);
     }
+
+    private Long ratedUserId(CallRatingEntity rating) {
+        CallEntity call = rating.getCall();
+        Long raterId = rating.getRater().getId();
+        return call.getUser1().getId().equals(raterId) ? call.getUser2().getId() : call.getUser1().getId();
+    }
 }
@@ -14,10 +14,16 @@ public class CallService {
 
     private final UserService userService;
     private final CallRepository callRepository;
+    private final CallParticipantCache callParticipantCache;
+    private final RedisMatchmakingService redisMatchmaking;
 
-    public CallService(UserService userService, CallRepository callRepository) {
+    public CallService(UserService userService, CallRepository callRepository,
+            CallParticipantCache callParticipantCache,
+            RedisMatchmakingService redisMatchmaking) {
         this.userService = userService;
         this.callRepository = callRepository;
+        this.callParticipantCache = callParticipantCache;
+        this.redisMatchmaking = redisMatchmaking;
     }
 
     public CallEntity createCall(Long user1Id, Long user2Id, CallEntity.CallType callType) {
@@ -66,7 +72,9 @@ public class CallService {
             call.setDurationSeconds((int) duration.getSeconds());
         }
 
-        return callRepository.save(call);
+        CallEntity saved = callRepository.save(call);
+        releaseParticipants(saved);
+        return saved;
     }
 
     public CallEntity cancelCall(Long callId) {
@@ -84,7 +92,24 @@ public class CallService {
             call.setDurationSeconds((int) duration.getSeconds());
         }
 
-        return callRepository.save(call);
+        CallEntity saved = callRepository.save(call);
+        releaseParticipants(saved);
+        return saved;
+    }
+
+    /**
+     * Libera os participantes da chamada encerrada, como {@link MatchmakingService#endCall}:
+     * remove a chamada do cache e do índice usuário → chamada e a marca de chamada de cada
+     * um no Redis.
+     */
+    private void releaseParticipants(CallEntity call) {
+        callParticipantCache.evict(call.getId());
+
+        Long user1Id = call.getUser1().getId();
+        Long user2Id = call.getUser2().getId();
+        redisMatchmaking.clearActiveCall(call.getId(), user1Id, user2Id);
+        redisMatchmaking.removeUserFromCall(user1Id);
+        redisMatchmaking.removeUserFromCall(user2Id);
     }
 
     public CallEntity updateCallType(Long callId, CallEntity.CallType callType) {
@@ -98,6 +123,7 @@ public class CallService {
             throw new IllegalArgumentException("Chamada não encontrada com ID: " + callId);
         }
         callRepository.deleteById(callId);
+        callParticipantCache.evict(callId);
     }
 
     public List<CallEntity> getActiveCalls() {
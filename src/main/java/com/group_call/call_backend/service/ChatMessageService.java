@@ -3,7 +3,10 @@ package com.group_call.call_backend.service;
 import com.group_call.call_backend.entity.CallEntity;
 import com.group_call.call_backend.entity.ChatMessageEntity;
 import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.CallRepository;
 import com.group_call.call_backend.repository.ChatMessageRepository;
+import com.group_call.call_backend.repository.UserRepository;
+import com.group_call.call_backend.service.CallParticipantCache.CallParticipants;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,14 +15,22 @@ import java.util.List;
 public class ChatMessageService {
 
     private final ChatMessageRepository chatMessageRepository;
+    private final CallRepository callRepository;
+    private final UserRepository userRepository;
     private final CallService callService;
     private final UserService userService;
+    private final RedisMatchmakingService redisMatchmaking;
 
     public ChatMessageService(ChatMessageRepository chatMessageRepository,
-            CallService callService, UserService userService) {
+            CallRepository callRepository, UserRepository userRepository,
+            CallService callService, UserService userService,
+            RedisMatchmakingService redisMatchmaking) {
         this.chatMessageRepository = chatMessageRepository;
+        this.callRepository = callRepository;
+        this.userRepository = userRepository;
         this.callService = callService;
         this.userService = userService;
+        this.redisMatchmaking = redisMatchmaking;
     }
 
     public ChatMessageEntity createMessage(Long callId, Long senderId, String messageText) {
@@ -42,6 +53,29 @@ public class ChatMessageService {
         return chatMessageRepository.save(message);
     }
 
+    /**
+     * Grava a mensagem de uma chamada já validada pelo {@link CallParticipantCache}: a
+     * chamada e o remetente entram como referências, sem consultas, e só o INSERT vai ao
+     * banco. O cache pode guardar uma chamada que outra instância acabou de encerrar,
+     * então a situação é conferida no índice {@code active_call} do Redis.
+     */
+    public ChatMessageEntity createMessage(CallParticipants call, Long senderId, String messageText) {
+        if (!call.includes(senderId)) {
+            throw new IllegalArgumentException("Usuário não faz parte desta chamada");
+        }
+
+        if (!redisMatchmaking.getActiveCallId(senderId).filter(call.callId()::equals).isPresent()) {
+            throw new IllegalStateException("Chamada " + call.callId() + " não está mais ativa");
+        }
+
+        ChatMessageEntity message = new ChatMessageEntity();
+        message.setCall(callRepository.getReferenceById(call.callId()));
+        message.setSender(userRepository.getReferenceById(senderId));
+        message.setMessageText(messageText);
+
+        return chatMessageRepository.save(message);
+    }
+
     public ChatMessageEntity findById(Long id) {
         return chatMessageRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Mensagem não encontrada com ID: " + id));
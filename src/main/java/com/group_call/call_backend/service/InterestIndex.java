@@ -0,0 +1,186 @@
+package com.group_call.call_backend.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Índice invertido em memória de interesse para os usuários na fila. Cada usuário ocupa
+ * um slot e cada interesse aponta para um {@link BitSet} com os slots de quem o declarou,
+ * de modo que encontrar o parceiro com maior sobreposição custa apenas percorrer as listas
+ * dos interesses do próprio usuário, sem consultar o Redis. O {@link PartnerSelector}
+ * mantém um índice por partição da fila.
+ */
+public class InterestIndex {
+
+    public static final int MAX_TAGS = 10;
+    public static final int MAX_TAG_LENGTH = 32;
+
+    private final Map<Long, Integer> slotByUser = new HashMap<>();
+    private final Map<String, BitSet> slotsByTag = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+    private Long[] userBySlot = new Long[64];
+    private String[][] tagsBySlot = new String[64][];
+    private long[] enqueuedAtBySlot = new long[64];
+    private long[] lastSeenBySlot = new long[64];
+    private int[] overlap = new int[64];
+    private int[] touched = new int[64];
+    private int nextSlot;
+
+    public static Set<String> normalize(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String tag : tags) {
+            if (tag == null) {
+                continue;
+            }
+            String value = tag.trim().toLowerCase(Locale.ROOT).replace(",", "");
+            if (!value.isEmpty() && value.length() <= MAX_TAG_LENGTH) {
+                normalized.add(value);
+            }
+            if (normalized.size() == MAX_TAGS) {
+                break;
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Registra (ou atualiza) os interesses de um usuário na fila.
+     */
+    public synchronized int put(Long userId, Set<String> tags, long enqueuedAt, long now) {
+        Integer existing = slotByUser.get(userId);
+        if (existing != null) {
+            if (Set.of(tagsBySlot[existing]).equals(tags)) {
+                enqueuedAtBySlot[existing] = enqueuedAt;
+                lastSeenBySlot[existing] = now;
+                return existing;
+            }
+            remove(userId);
+        }
+
+        int slot = allocateSlot();
+        slotByUser.put(userId, slot);
+        userBySlot[slot] = userId;
+        tagsBySlot[slot] = tags.toArray(String[]::new);
+        enqueuedAtBySlot[slot] = enqueuedAt;
+        lastSeenBySlot[slot] = now;
+        for (String tag : tags) {
+            slotsByTag.computeIfAbsent(tag, key -> new BitSet()).set(slot);
+        }
+        return slot;
+    }
+
+    public synchronized void remove(Long userId) {
+        Integer slot = slotByUser.remove(userId);
+        if (slot == null) {
+            return;
+        }
+        for (String tag : tagsBySlot[slot]) {
+            BitSet slots = slotsByTag.get(tag);
+            if (slots != null) {
+                slots.clear(slot);
+                if (slots.isEmpty()) {
+                    slotsByTag.remove(tag);
+                }
+            }
+        }
+        userBySlot[slot] = null;
+        tagsBySlot[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    public synchronized int slotOf(Long userId) {
+        Integer slot = slotByUser.get(userId);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Entre os slots marcados em {@code candidates}, retorna o usuário que compartilha mais
+     * interesses com {@code userId}; empates ficam com quem está há mais tempo na fila.
+     * Candidatos recusados por {@code excluded} são ignorados. Retorna {@code null} se
+     * ninguém compartilha ao menos um interesse.
+     */
+    public synchronized Long bestOverlap(Long userId, BitSet candidates, Predicate<Long> excluded) {
+        Integer slot = slotByUser.get(userId);
+        if (slot == null) {
+            return null;
+        }
+
+        int touchedCount = 0;
+        int best = -1;
+        for (String tag : tagsBySlot[slot]) {
+            BitSet slots = slotsByTag.get(tag);
+            if (slots == null) {
+                continue;
+            }
+            for (int other = slots.nextSetBit(0); other >= 0; other = slots.nextSetBit(other + 1)) {
+                if (other == slot || !candidates.get(other)) {
+                    continue;
+                }
+                if (overlap[other] < 0) {
+                    continue;
+                }
+                if (overlap[other] == 0) {
+                    touched[touchedCount++] = other;
+                    if (excluded.test(userBySlot[other])) {
+                        overlap[other] = -1;
+                        continue;
+                    }
+                }
+                overlap[other]++;
+                if (best < 0 || overlap[other] > overlap[best]
+                        || (overlap[other] == overlap[best] && enqueuedAtBySlot[other] < enqueuedAtBySlot[best])) {
+                    best = other;
+                }
+            }
+        }
+
+        for (int i = 0; i < touchedCount; i++) {
+            overlap[touched[i]] = 0;
+        }
+        return best >= 0 ? userBySlot[best] : null;
+    }
+
+    /**
+     * Remove usuários que não aparecem na fila desde {@code cutoff}, por exemplo quem
+     * saiu da fila por outra instância.
+     */
+    public synchronized void evictNotSeenSince(long cutoff) {
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (userBySlot[slot] != null && lastSeenBySlot[slot] < cutoff) {
+                remove(userBySlot[slot]);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return slotByUser.size();
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (nextSlot == userBySlot.length) {
+            int capacity = userBySlot.length * 2;
+            userBySlot = Arrays.copyOf(userBySlot, capacity);
+            tagsBySlot = Arrays.copyOf(tagsBySlot, capacity);
+            enqueuedAtBySlot = Arrays.copyOf(enqueuedAtBySlot, capacity);
+            lastSeenBySlot = Arrays.copyOf(lastSeenBySlot, capacity);
+            overlap = Arrays.copyOf(overlap, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+        return nextSlot++;
+    }
+}
@@ -0,0 +1,82 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métricas do pareamento expostas pelo Actuator: histograma do tempo até o match por tipo
+ * de chamada, contador de pares formados e profundidade da fila. Um par conta quando os
+ * dois usuários confirmam a proposta; também é somado nos contadores compartilhados do
+ * Redis, usados para estimar a espera.
+ */
+@Component
+public class MatchmakingMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatchmakingMetrics.class);
+
+    private final RedisMatchmakingService redisMatchmaking;
+    private final Map<CallEntity.CallType, Timer> timeToMatch = new EnumMap<>(CallEntity.CallType.class);
+    private final Counter matches;
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    public MatchmakingMetrics(MeterRegistry meterRegistry, RedisMatchmakingService redisMatchmaking) {
+        this.redisMatchmaking = redisMatchmaking;
+
+        for (CallEntity.CallType callType : CallEntity.CallType.values()) {
+            timeToMatch.put(callType, Timer.builder("matchmaking.time.to.match")
+                    .description("Tempo entre a entrada na fila e o pareamento")
+                    .tag("call_type", callType.name())
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+
+        this.matches = Counter.builder("matchmaking.matches")
+                .description("Pares formados")
+                .register(meterRegistry);
+
+        Gauge.builder("matchmaking.queue.depth", queueDepth, AtomicLong::get)
+                .description("Usuários aguardando na fila")
+                .register(meterRegistry);
+    }
+
+    public void recordMatches(QueueShard shard, List<QueuedUser[]> pairs, long now) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+
+        Timer timer = timeToMatch.get(shard.callType());
+        long totalWait = 0;
+        for (QueuedUser[] pair : pairs) {
+            for (QueuedUser user : pair) {
+                long waited = Math.max(0, now - user.enqueuedAt());
+                timer.record(waited, TimeUnit.MILLISECONDS);
+                totalWait += waited;
+            }
+        }
+        matches.increment(pairs.size());
+
+        try {
+            redisMatchmaking.recordMatchStats(shard, pairs.size(), totalWait);
+        } catch (Exception e) {
+            logger.warn("Falha ao registrar estatísticas de pareamento: {}", e.getMessage());
+        }
+    }
+
+    public void setQueueDepth(long depth) {
+        queueDepth.set(depth);
+    }
+}
@@ -4,14 +4,18 @@ import com.group_call.call_backend.entity.CallEntity;
 import com.group_call.call_backend.entity.UserEntity;
 import com.group_call.call_backend.repository.CallRepository;
 import com.group_call.call_backend.repository.UserRepository;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class MatchmakingService {
@@ -21,30 +25,55 @@ public class MatchmakingService {
     private final UserRepository userRepository;
     private final CallRepository callRepository;
     private final RedisMatchmakingService redisMatchmaking;
-    private final RedisWebSocketBroadcastService redisBroadcast;
-
-    private final Object matchLock = new Object();
+    private final WebSocketBroadcastService broadcastService;
+    private final MatchmakingWorker matchmakingWorker;
+    private final CallParticipantCache callParticipantCache;
+    private final PresenceService presenceService;
+    private final MatchmakingMetrics matchmakingMetrics;
 
     @Autowired
     public MatchmakingService(UserRepository userRepository, CallRepository callRepository,
             RedisMatchmakingService redisMatchmaking,
-            RedisWebSocketBroadcastService redisBroadcast) {
+            WebSocketBroadcastService broadcastService,
+            MatchmakingWorker matchmakingWorker,
+            CallParticipantCache callParticipantCache,
+            PresenceService presenceService,
+            MatchmakingMetrics matchmakingMetrics) {
         this.userRepository = userRepository;
         this.callRepository = callRepository;
         this.redisMatchmaking = redisMatchmaking;
-        this.redisBroadcast = redisBroadcast;
+        this.broadcastService = broadcastService;
+        this.matchmakingWorker = matchmakingWorker;
+        this.callParticipantCache = callParticipantCache;
+        this.presenceService = presenceService;
+        this.matchmakingMetrics = matchmakingMetrics;
     }
 
     public void registerSession(Long userId, String sessionId) {
-        redisMatchmaking.saveUserSession(userId, sessionId);
+        presenceService.touch(userId);
     }
 
     public void unregisterSession(Long userId) {
-        redisMatchmaking.removeUserSession(userId);
+        presenceService.disconnected(userId);
         redisMatchmaking.leaveQueue(userId);
+        cancelPendingMatch(userId);
     }
 
     public void joinQueue(Long userId) {
+        prepareToJoin(userId);
+        redisMatchmaking.rejoinQueue(userId, redisMatchmaking.getPreferredShard(userId));
+        matchmakingWorker.signal();
+    }
+
+    public void joinQueue(Long userId, QueueShard shard, Set<String> interests) {
+        prepareToJoin(userId);
+        redisMatchmaking.joinQueue(userId, shard, interests);
+        matchmakingWorker.signal();
+    }
+
+    private void prepareToJoin(Long userId) {
+        cancelPendingMatch(userId);
+
         if (redisMatchmaking.isUserInCall(userId)) {
             boolean hasActiveCall = hasActiveCallInDatabase(userId);
 
@@ -59,43 +88,109 @@ public class MatchmakingService {
                 }
             }
         }
-
-        redisMatchmaking.joinQueue(userId);
-        tryMatch();
     }
 
     private boolean hasActiveCallInDatabase(Long userId) {
         try {
-            // Ideally should be a custom query in repository:
-            // findByStatusAndUser1IdOrUser2Id
-            java.util.List<CallEntity> activeCalls = callRepository.findByStatus(CallEntity.CallStatus.ACTIVE);
-            for (CallEntity call : activeCalls) {
-                if (call.getUser1().getId().equals(userId) || call.getUser2().getId().equals(userId)) {
-                    return true;
-                }
-            }
-            return false;
+            return findActiveCall(userId).isPresent();
         } catch (Exception e) {
             logger.error("Erro ao verificar chamadas ativas para userId={}", userId, e);
             return false;
         }
     }
 
+    /**
+     * Chamada ativa do usuário. O índice usuário → chamada no Redis aponta direto para a
+     * linha, confirmada por chave primária; sem o índice, só consulta o banco (pelos
+     * índices de user1/user2 + status) se o Redis ainda marca o usuário em chamada.
+     */
+    private Optional<CallEntity> findActiveCall(Long userId) {
+        Optional<Long> callId = redisMatchmaking.getActiveCallId(userId);
+        if (callId.isPresent()) {
+            Optional<CallEntity> call = callRepository.findById(callId.get())
+                    .filter(active -> active.getStatus() == CallEntity.CallStatus.ACTIVE);
+            if (call.isEmpty()) {
+                redisMatchmaking.clearActiveCall(callId.get(), userId);
+            }
+            return call;
+        }
+
+        if (!redisMatchmaking.isUserInCall(userId)) {
+            return Optional.empty();
+        }
+        return callRepository.findByUserIdAndStatus(userId, CallEntity.CallStatus.ACTIVE).stream().findFirst();
+    }
+
     public void leaveQueue(Long userId) {
         redisMatchmaking.leaveQueue(userId);
+        cancelPendingMatch(userId);
+    }
+
+    /**
+     * Confirma o pareamento proposto pelo {@link MatchmakingWorker}. A chamada é criada
+     * quando o segundo usuário confirma; até lá a reserva apenas registra a resposta.
+     * Só então o par entra nas métricas, medido desde a entrada original na fila.
+     *
+     * @throws IllegalStateException se a reserva expirou ou não pertence ao usuário
+     */
+    public void acceptMatch(Long userId, Long reservationId) {
+        Optional<RedisMatchmakingService.ConfirmedReservation> confirmed =
+                redisMatchmaking.acceptReservation(reservationId, userId);
+        if (confirmed.isEmpty()) {
+            return;
+        }
+
+        RedisMatchmakingService.ConfirmedReservation reservation = confirmed.get();
+        Map<Long, UserEntity> users = new HashMap<>();
+        for (UserEntity user : userRepository.findAllById(
+                List.of(reservation.user1().userId(), reservation.user2().userId()))) {
+            users.put(user.getId(), user);
+        }
+        UserEntity user1 = users.get(reservation.user1().userId());
+        UserEntity user2 = users.get(reservation.user2().userId());
+        if (user1 == null || user2 == null) {
+            throw new IllegalStateException("Usuário não encontrado");
+        }
+
+        CallEntity call = new CallEntity();
+        call.setUser1(user1);
+        call.setUser2(user2);
+        call.setStartedAt(LocalDateTime.now());
+        call.setCallType(reservation.shard().callType());
+        call.setStatus(CallEntity.CallStatus.ACTIVE);
+        call = callRepository.save(call);
+        matchmakingMetrics.recordMatches(reservation.shard(),
+                List.<QueuedUser[]>of(new QueuedUser[]{reservation.user1(), reservation.user2()}), System.currentTimeMillis());
+
+        redisMatchmaking.setActiveCall(call.getId(), user1.getId(), user2.getId());
+        callParticipantCache.put(call);
+
+        broadcastService.broadcastMatchFound(user1.getId(), Map.of(
+                "callId", call.getId(),
+                "peerId", user2.getId(),
+                "peerName", user2.getName()));
+
+        broadcastService.broadcastMatchFound(user2.getId(), Map.of(
+                "callId", call.getId(),
+                "peerId", user1.getId(),
+                "peerName", user1.getName()));
+    }
+
+    private void cancelPendingMatch(Long userId) {
+        redisMatchmaking.cancelReservation(userId).ifPresent(partnerId -> {
+            broadcastService.broadcastToUser(partnerId, "/queue/status", Map.of(
+                    "status", "waiting",
+                    "reason", "match_cancelled"));
+            matchmakingWorker.signal();
+        });
     }
 
     public void cleanupUserOnDisconnect(Long userId) {
         try {
             redisMatchmaking.leaveQueue(userId);
+            cancelPendingMatch(userId);
             endActiveCallForUser(userId);
-            redisMatchmaking.removeUserSession(userId);
-
-            UserEntity user = userRepository.findById(userId).orElse(null);
-            if (user != null) {
-                user.setIsOnline(false);
-                userRepository.save(user);
-            }
+            presenceService.disconnected(userId);
         } catch (Exception e) {
             logger.error("Erro ao limpar estado do usuário userId={}", userId, e);
         }
@@ -103,21 +198,7 @@ public class MatchmakingService {
 
     private void endActiveCallForUser(Long userId) {
         try {
-            UserEntity user = userRepository.findById(userId).orElse(null);
-            if (user == null) {
-                return;
-            }
-
-            java.util.List<CallEntity> activeCalls = callRepository.findByStatus(CallEntity.CallStatus.ACTIVE);
-            CallEntity activeCall = null;
-
-            for (CallEntity call : activeCalls) {
-                if (call.getUser1().getId().equals(userId) || call.getUser2().getId().equals(userId)) {
-                    activeCall = call;
-                    break;
-                }
-            }
-
+            CallEntity activeCall = findActiveCall(userId).orElse(null);
             if (activeCall == null) {
                 return;
             }
@@ -136,7 +217,9 @@ public class MatchmakingService {
             }
 
             callRepository.save(activeCall);
+            callParticipantCache.evict(activeCall.getId());
 
+            redisMatchmaking.clearActiveCall(activeCall.getId(), userId, partnerId);
             redisMatchmaking.removeUserFromCall(userId);
             redisMatchmaking.removeUserFromCall(partnerId);
 
@@ -158,6 +241,8 @@ public class MatchmakingService {
             if (partnerIdOpt.isPresent()) {
                 Long partnerId = partnerIdOpt.get();
 
+                redisMatchmaking.getActiveCallId(userId)
+                        .ifPresent(callId -> redisMatchmaking.clearActiveCall(callId, userId, partnerId));
                 redisMatchmaking.removeUserFromCall(userId);
                 redisMatchmaking.removeUserFromCall(partnerId);
 
@@ -189,16 +274,15 @@ public class MatchmakingService {
         }
 
         callRepository.save(call);
+        callParticipantCache.evict(callId);
 
         Long user1Id = call.getUser1().getId();
         Long user2Id = call.getUser2().getId();
 
+        redisMatchmaking.clearActiveCall(callId, user1Id, user2Id);
         redisMatchmaking.removeUserFromCall(user1Id);
         redisMatchmaking.removeUserFromCall(user2Id);
 
-        updateUserStatusAfterCall(user1Id);
-        updateUserStatusAfterCall(user2Id);
-
         Map<String, Object> notification = Map.of(
                 "callId", callId,
                 "reason", "call_ended");
@@ -207,90 +291,15 @@ public class MatchmakingService {
         sendCallEnded(user2Id, notification);
     }
 
-    private void updateUserStatusAfterCall(Long userId) {
-        try {
-            UserEntity user = userRepository.findById(userId).orElse(null);
-            if (user != null) {
-                userRepository.save(user);
-            }
-        } catch (Exception e) {
-            logger.error("Erro ao atualizar usuário userId={}", userId, e);
-        }
-    }
-
-    private void tryMatch() {
-        synchronized (matchLock) {
-            Long queueSize = redisMatchmaking.getQueueSize();
-
-            if (queueSize < 2) {
-                return;
-            }
-
-            Optional<Long[]> matchResult = redisMatchmaking.tryMatch();
-
-            if (matchResult.isEmpty()) {
-                return;
-            }
-
-            Long[] users = matchResult.get();
-            Long user1Id = users[0];
-            Long user2Id = users[1];
-
-            if (user1Id.equals(user2Id)) {
-                logger.error("Erro crítico: mesmo usuário pareado duas vezes - userId={}", user1Id);
-                redisMatchmaking.joinQueue(user1Id);
-                return;
-            }
-
-            Optional<UserEntity> user1Opt = userRepository.findById(user1Id);
-            Optional<UserEntity> user2Opt = userRepository.findById(user2Id);
-
-            if (user1Opt.isEmpty() || user2Opt.isEmpty()) {
-                if (user1Opt.isPresent())
-                    redisMatchmaking.joinQueue(user1Id);
-                if (user2Opt.isPresent())
-                    redisMatchmaking.joinQueue(user2Id);
-                return;
-            }
-
-            UserEntity user1 = user1Opt.get();
-            UserEntity user2 = user2Opt.get();
-
-            CallEntity call = new CallEntity();
-            call.setUser1(user1);
-            call.setUser2(user2);
-            call.setStartedAt(LocalDateTime.now());
-            call.setCallType(CallEntity.CallType.VIDEO);
-            call.setStatus(CallEntity.CallStatus.ACTIVE);
-
-            call = callRepository.save(call);
-
-            redisMatchmaking.setUserInCall(user1Id, user2Id);
-            redisMatchmaking.setUserInCall(user2Id, user1Id);
-
-            Map<String, Object> matchData = Map.of(
-                    "callId", call.getId(),
-                    "peerId", user2Id,
-                    "peerName", user2.getName());
-            sendMatchFound(user1Id, matchData);
-
-            matchData = Map.of(
-                    "callId", call.getId(),
-                    "peerId", user1Id,
-                    "peerName", user1.getName());
-            sendMatchFound(user2Id, matchData);
-        }
-    }
-
-    private void sendMatchFound(Long userId, Map<String, Object> matchData) {
-        redisBroadcast.broadcastMatchFound(userId, matchData);
-    }
-
     private void sendCallEnded(Long userId, Map<String, Object> endData) {
-        redisBroadcast.broadcastCallEnded(userId, endData);
+        broadcastService.broadcastCallEnded(userId, endData);
     }
 
     public Long getUserCallId(Long userId) {
+        Optional<Long> callId = redisMatchmaking.getActiveCallId(userId);
+        if (callId.isPresent()) {
+            return callId.get();
+        }
         if (redisMatchmaking.isUserInCall(userId)) {
             return -1L;
         }
@@ -303,6 +312,8 @@ public class MatchmakingService {
 
     public void forceCleanupCallState(Long userId) {
         try {
+            redisMatchmaking.getActiveCallId(userId)
+                    .ifPresent(callId -> redisMatchmaking.clearActiveCall(callId, userId));
             redisMatchmaking.removeUserFromCall(userId);
 
             Optional<Long> partnerIdOpt = redisMatchmaking.getPartnerUserId(userId);
@@ -0,0 +1,259 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.UserRepository;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Loop dedicado de pareamento. Acorda a cada intervalo curto ou quando sinalizado por
+ * {@link #signal()} e processa cada partição da fila de forma independente e em paralelo:
+ * lê uma janela da fila, escolhe os pares com o {@link PartnerSelector}, confirma todos em
+ * uma única ida ao Redis, carrega os usuários com uma consulta e reserva cada par por
+ * {@code matchmaking.reservation.lease-ms}, enviando MATCH_PROPOSED aos dois. A chamada só
+ * é gravada quando ambos confirmam ({@link MatchmakingService#acceptMatch}); reservas
+ * vencidas são varridas a cada ciclo. Antes disso, usuários que esperaram mais que
+ * {@code matchmaking.shard.aging-ms} migram para a partição mais ampla.
+ */
+@Service
+public class MatchmakingWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatchmakingWorker.class);
+    private static final long INDEX_RETENTION_MS = 30_000;
+
+    private final RedisMatchmakingService redisMatchmaking;
+    private final UserRepository userRepository;
+    private final WebSocketBroadcastService broadcastService;
+    private final PartnerSelector partnerSelector;
+    private final RecentPartnerFilter recentPartnerFilter;
+    private final long intervalMs;
+    private final int maxPairsPerTick;
+    private final int windowSize;
+    private final long agingMs;
+    private final long leaseMs;
+    private final ExecutorService shardExecutor;
+
+    private final Semaphore wakeup = new Semaphore(0);
+    private volatile boolean running;
+    private Thread thread;
+
+    public MatchmakingWorker(RedisMatchmakingService redisMatchmaking,
+            UserRepository userRepository,
+            WebSocketBroadcastService broadcastService,
+            PartnerSelector partnerSelector,
+            RecentPartnerFilter recentPartnerFilter,
+            @Value("${matchmaking.worker.interval-ms:50}") long intervalMs,
+            @Value("${matchmaking.worker.max-pairs-per-tick:200}") int maxPairsPerTick,
+            @Value("${matchmaking.worker.window-size:500}") int windowSize,
+            @Value("${matchmaking.shard.aging-ms:15000}") long agingMs,
+            @Value("${matchmaking.worker.parallelism:4}") int parallelism,
+            @Value("${matchmaking.reservation.lease-ms:10000}") long leaseMs) {
+        this.redisMatchmaking = redisMatchmaking;
+        this.userRepository = userRepository;
+        this.broadcastService = broadcastService;
+        this.partnerSelector = partnerSelector;
+        this.recentPartnerFilter = recentPartnerFilter;
+        this.intervalMs = intervalMs;
+        this.maxPairsPerTick = maxPairsPerTick;
+        this.windowSize = windowSize;
+        this.agingMs = agingMs;
+        this.leaseMs = leaseMs;
+        this.shardExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread shardThread = new Thread(runnable, "matchmaking-shard");
+            shardThread.setDaemon(true);
+            return shardThread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "matchmaking-worker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        shardExecutor.shutdownNow();
+    }
+
+    public void signal() {
+        wakeup.release();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                wakeup.tryAcquire(intervalMs, TimeUnit.MILLISECONDS);
+                wakeup.drainPermits();
+
+                int matched;
+                do {
+                    matched = matchBatch();
+                } while (running && matched >= maxPairsPerTick);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Erro no loop de pareamento: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Executa um ciclo de pareamento em todas as partições e retorna quantos pares foram
+     * retirados da fila.
+     */
+    public int matchBatch() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        partnerSelector.evictNotSeenSince(now - INDEX_RETENTION_MS);
+        expireReservations(now);
+
+        Set<QueueShard> shards = new HashSet<>(redisMatchmaking.getActiveShards());
+        if (shards.isEmpty()) {
+            return 0;
+        }
+
+        long cutoff = now - agingMs;
+        for (QueueShard shard : List.copyOf(shards)) {
+            if (!shard.isWidest() && redisMatchmaking.ageShard(shard, cutoff, maxPairsPerTick * 2) > 0) {
+                shards.add(shard.wider());
+            }
+        }
+
+        if (shards.size() == 1) {
+            return matchShard(shards.iterator().next());
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<>(shards.size());
+        for (QueueShard shard : shards) {
+            tasks.add(() -> matchShard(shard));
+        }
+
+        int matched = 0;
+        for (Future<Integer> result : shardExecutor.invokeAll(tasks)) {
+            try {
+                matched += result.get();
+            } catch (ExecutionException e) {
+                logger.error("Erro ao parear partição: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return matched;
+    }
+
+    private int matchShard(QueueShard shard) {
+        List<QueuedUser> window = redisMatchmaking.peekQueue(shard, windowSize);
+        List<QueuedUser[]> selected = partnerSelector.selectPairs(shard, window, maxPairsPerTick, System.currentTimeMillis());
+        if (selected.isEmpty()) {
+            return 0;
+        }
+
+        List<QueuedUser[]> pairs = redisMatchmaking.claimPairs(shard, selected);
+        partnerSelector.release(shard, pairs);
+        if (pairs.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> userIds = new HashSet<>();
+        for (QueuedUser[] pair : pairs) {
+            userIds.add(pair[0].userId());
+            userIds.add(pair[1].userId());
+        }
+
+        Map<Long, UserEntity> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(UserEntity::getId, Function.identity()));
+
+        List<QueuedUser[]> proposed = new ArrayList<>(pairs.size());
+        for (QueuedUser[] pair : pairs) {
+            UserEntity user1 = users.get(pair[0].userId());
+            UserEntity user2 = users.get(pair[1].userId());
+
+            if (user1 == null || user2 == null) {
+                if (user1 != null)
+                    redisMatchmaking.requeue(shard, pair[0]);
+                if (user2 != null)
+                    redisMatchmaking.requeue(shard, pair[1]);
+                continue;
+            }
+            proposed.add(pair);
+        }
+
+        if (proposed.isEmpty()) {
+            return pairs.size();
+        }
+
+        List<Long> reservationIds = redisMatchmaking.reservePairs(shard, proposed,
+                System.currentTimeMillis() + leaseMs);
+        recentPartnerFilter.remember(proposed);
+
+        for (int i = 0; i < proposed.size(); i++) {
+            UserEntity user1 = users.get(proposed.get(i)[0].userId());
+            UserEntity user2 = users.get(proposed.get(i)[1].userId());
+            Long reservationId = reservationIds.get(i);
+
+            sendMatchProposed(user1.getId(), Map.of(
+                    "reservationId", reservationId,
+                    "peerId", user2.getId(),
+                    "peerName", user2.getName(),
+                    "expiresInMs", leaseMs));
+
+            sendMatchProposed(user2.getId(), Map.of(
+                    "reservationId", reservationId,
+                    "peerId", user1.getId(),
+                    "peerName", user1.getName(),
+                    "expiresInMs", leaseMs));
+        }
+
+        return pairs.size();
+    }
+
+    /**
+     * Desfaz as reservas cujo prazo passou: quem confirmou volta para a fila na posição
+     * original; quem não respondeu é considerado ausente e fica fora da fila.
+     */
+    public void expireReservations(long now) {
+        for (RedisMatchmakingService.ExpiredReservation expired
+                : redisMatchmaking.expireReservations(now, maxPairsPerTick)) {
+            releaseExpired(expired.shard(), expired.user1(), expired.user1Accepted());
+            releaseExpired(expired.shard(), expired.user2(), expired.user2Accepted());
+        }
+    }
+
+    private void releaseExpired(QueueShard shard, QueuedUser user, boolean accepted) {
+        if (accepted) {
+            redisMatchmaking.requeue(shard, user);
+        }
+        broadcastService.broadcastToUser(user.userId(), "/queue/status", Map.of(
+                "status", accepted ? "waiting" : "idle",
+                "reason", "match_expired"));
+    }
+
+    private void sendMatchProposed(Long userId, Map<String, Object> proposal) {
+        broadcastService.broadcastMatchProposed(userId, proposal);
+    }
+}
@@ -0,0 +1,48 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+
+import java.util.List;
+
+/**
+ * Transporte entre instâncias das mensagens destinadas a usuários conectados em outra
+ * instância, escolhido por {@code websocket.transport}.
+ */
+public interface MessageTransport {
+
+    /**
+     * Mensagem já codificada destinada a um usuário.
+     */
+    record Outbound(Long userId, byte[] message) {
+    }
+
+    /**
+     * Entrega local das mensagens recebidas pelo transporte.
+     */
+    @FunctionalInterface
+    interface LocalDelivery {
+
+        /**
+         * Entrega a mensagem ao usuário conectado nesta instância; retorna {@code false}
+         * se ele não tem sessão aqui.
+         */
+        boolean deliver(WebSocketMessage message);
+    }
+
+    /**
+     * Passa a receber as mensagens destinadas a esta instância.
+     */
+    void start(LocalDelivery delivery);
+
+    /**
+     * Envia as mensagens às instâncias dos destinatários. Chamado pela thread do
+     * {@link RedisMessagePublisher}.
+     */
+    void send(List<Outbound> messages);
+
+    /**
+     * O usuário acabou de conectar nesta instância.
+     */
+    default void userConnected(Long userId) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Escolhe os pares dentro de uma janela da fila (já em ordem de chegada). Usuários com
+ * interesses esperam por alguém que compartilhe ao menos um deles, consultando o
+ * {@link InterestIndex} da partição; depois de {@code matchmaking.interests.fallback-ms} passam a
+ * aceitar qualquer parceiro, como quem não informou interesses. Parceiros recentes,
+ * segundo o {@link RecentPartnerFilter}, nunca são escolhidos. Usuários avaliados só são
+ * pareados dentro de uma faixa de reputação de {@code matchmaking.reputation.band-width},
+ * que se amplia em uma faixa a cada {@code matchmaking.reputation.relax-ms} de espera.
+ * <p>
+ * Cada partição tem o próprio índice, e só ele fica travado durante a seleção: as
+ * partições drenadas em paralelo pelo {@link MatchmakingWorker} não se esperam.
+ */
+@Component
+public class PartnerSelector {
+
+    private final Map<QueueShard, InterestIndex> interestIndexes = new ConcurrentHashMap<>();
+    private final RecentPartnerFilter recentPartnerFilter;
+    private final long fallbackMs;
+    private final double bandWidth;
+    private final long relaxMs;
+
+    public PartnerSelector(RecentPartnerFilter recentPartnerFilter,
+            @Value("${matchmaking.interests.fallback-ms:10000}") long fallbackMs,
+            @Value("${matchmaking.reputation.band-width:0.5}") double bandWidth,
+            @Value("${matchmaking.reputation.relax-ms:10000}") long relaxMs) {
+        this.recentPartnerFilter = recentPartnerFilter;
+        this.fallbackMs = fallbackMs;
+        this.bandWidth = bandWidth;
+        this.relaxMs = relaxMs;
+    }
+
+    public List<QueuedUser[]> selectPairs(QueueShard shard, List<QueuedUser> window, int maxPairs, long now) {
+        List<QueuedUser[]> pairs = new ArrayList<>();
+        if (window.size() < 2) {
+            return pairs;
+        }
+
+        Map<Long, Integer> positions = new HashMap<>();
+        boolean[] paired = new boolean[window.size()];
+        InterestIndex interestIndex = interestIndexes.computeIfAbsent(shard, key -> new InterestIndex());
+
+        // Os slots marcados em candidates só valem enquanto ninguém mais mexe neste índice
+        synchronized (interestIndex) {
+            BitSet candidates = new BitSet();
+            for (int i = 0; i < window.size(); i++) {
+                QueuedUser user = window.get(i);
+                positions.put(user.userId(), i);
+                if (!user.interests().isEmpty()) {
+                    candidates.set(interestIndex.put(user.userId(), user.interests(), user.enqueuedAt(), now));
+                }
+            }
+
+            int flexibleCursor = 0;
+            for (int i = 0; i < window.size() && pairs.size() < maxPairs; i++) {
+                if (paired[i]) {
+                    continue;
+                }
+                QueuedUser user = window.get(i);
+                int partner = -1;
+
+                clearCandidate(interestIndex, candidates, user);
+                if (!user.interests().isEmpty()) {
+                    Long best = interestIndex.bestOverlap(user.userId(), candidates,
+                            other -> !isAcceptable(user, window.get(positions.get(other)), now));
+                    if (best != null) {
+                        partner = positions.get(best);
+                    }
+                }
+
+                if (partner < 0 && isFlexible(user, now)) {
+                    while (flexibleCursor < window.size()
+                            && (paired[flexibleCursor] || !isFlexible(window.get(flexibleCursor), now))) {
+                        flexibleCursor++;
+                    }
+                    for (int j = flexibleCursor; j < window.size(); j++) {
+                        if (j != i && !paired[j] && isFlexible(window.get(j), now)
+                                && isAcceptable(user, window.get(j), now)) {
+                            partner = j;
+                            break;
+                        }
+                    }
+                }
+
+                if (partner < 0) {
+                    if (!user.interests().isEmpty()) {
+                        candidates.set(interestIndex.slotOf(user.userId()));
+                    }
+                    continue;
+                }
+
+                paired[i] = true;
+                paired[partner] = true;
+                clearCandidate(interestIndex, candidates, window.get(partner));
+                pairs.add(new QueuedUser[]{user, window.get(partner)});
+            }
+        }
+
+        return pairs;
+    }
+
+    /**
+     * Remove do índice usuários que deixaram a fila por terem sido pareados.
+     */
+    public void release(QueueShard shard, List<QueuedUser[]> pairs) {
+        InterestIndex interestIndex = interestIndexes.get(shard);
+        if (interestIndex == null) {
+            return;
+        }
+        for (QueuedUser[] pair : pairs) {
+            interestIndex.remove(pair[0].userId());
+            interestIndex.remove(pair[1].userId());
+        }
+    }
+
+    /**
+     * Remove dos índices usuários que não aparecem na fila desde {@code cutoff}, por
+     * exemplo quem saiu da fila por outra instância ou migrou para uma partição mais ampla.
+     */
+    public void evictNotSeenSince(long cutoff) {
+        for (InterestIndex interestIndex : interestIndexes.values()) {
+            interestIndex.evictNotSeenSince(cutoff);
+        }
+    }
+
+    private boolean isAcceptable(QueuedUser user, QueuedUser other, long now) {
+        return !recentPartnerFilter.mightHaveMet(user.userId(), other.userId())
+                && withinReputationBand(user, other, now);
+    }
+
+    private boolean withinReputationBand(QueuedUser user, QueuedUser other, long now) {
+        if (Double.isNaN(user.reputation()) || Double.isNaN(other.reputation())) {
+            return true;
+        }
+        long waited = now - Math.min(user.enqueuedAt(), other.enqueuedAt());
+        double tolerance = bandWidth * (1 + Math.max(0, waited) / relaxMs);
+        return Math.abs(user.reputation() - other.reputation()) <= tolerance;
+    }
+
+    private boolean isFlexible(QueuedUser user, long now) {
+        return user.interests().isEmpty() || now - user.enqueuedAt() >= fallbackMs;
+    }
+
+    private static void clearCandidate(InterestIndex interestIndex, BitSet candidates, QueuedUser user) {
+        int slot = interestIndex.slotOf(user.userId());
+        if (slot >= 0) {
+            candidates.clear(slot);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mensagens que chegaram de outra instância para um usuário que ainda não tem sessão
+ * aqui, tipicamente porque está reconectando. Ficam guardadas por usuário, no máximo
+ * {@code websocket.pending.max-per-user} por usuário e
+ * {@code websocket.pending.max-users} usuários, até serem entregues de uma vez quando ele
+ * se inscreve no destino ou chama {@code /app/connect}. Um único varredor descarta as
+ * que passaram de {@code websocket.pending.ttl-ms}.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "simple", matchIfMissing = true)
+public class PendingDeliveryBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingDeliveryBuffer.class);
+
+    private record Pending(WebSocketMessage message, long expiresAt) {
+    }
+
+    private final Map<Long, Deque<Pending>> pending;
+    private final int maxPerUser;
+    private final long ttlMs;
+    private final Counter expired;
+    private final Counter dropped;
+
+    public PendingDeliveryBuffer(MeterRegistry meterRegistry,
+            @Value("${websocket.pending.max-users:10000}") int maxUsers,
+            @Value("${websocket.pending.max-per-user:32}") int maxPerUser,
+            @Value("${websocket.pending.ttl-ms:5000}") long ttlMs) {
+        this.maxPerUser = maxPerUser;
+        this.ttlMs = ttlMs;
+        this.expired = Counter.builder("websocket.pending.expired")
+                .description("Mensagens descartadas sem que o usuário aparecesse a tempo")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("websocket.pending.dropped")
+                .description("Mensagens descartadas por falta de espaço")
+                .register(meterRegistry);
+        this.pending = new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Deque<Pending>> eldest) {
+                if (size() > maxUsers) {
+                    dropped.increment(eldest.getValue().size());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        Gauge.builder("websocket.pending.users", this, PendingDeliveryBuffer::size)
+                .description("Usuários com mensagens aguardando entrega")
+                .register(meterRegistry);
+    }
+
+    public void add(WebSocketMessage message) {
+        add(message, System.currentTimeMillis());
+    }
+
+    void add(WebSocketMessage message, long now) {
+        synchronized (pending) {
+            Deque<Pending> messages = pending.computeIfAbsent(message.getTargetUserId(), userId -> new ArrayDeque<>());
+            if (messages.size() >= maxPerUser) {
+                messages.pollFirst();
+                dropped.increment();
+            }
+            messages.addLast(new Pending(message, now + ttlMs));
+        }
+    }
+
+    /**
+     * Retira, na ordem de chegada, todas as mensagens guardadas para o usuário.
+     */
+    public List<WebSocketMessage> drain(Long userId) {
+        Deque<Pending> messages;
+        synchronized (pending) {
+            messages = pending.remove(userId);
+        }
+        if (messages == null) {
+            return List.of();
+        }
+
+        List<WebSocketMessage> drained = new ArrayList<>(messages.size());
+        for (Pending entry : messages) {
+            drained.add(entry.message());
+        }
+        return drained;
+    }
+
+    /**
+     * Retira as mensagens guardadas para o usuário com o destino informado
+     * (ex.: {@code /queue/match-found}); as demais continuam guardadas.
+     */
+    public List<WebSocketMessage> drain(Long userId, String destination) {
+        List<WebSocketMessage> drained = new ArrayList<>();
+        synchronized (pending) {
+            Deque<Pending> messages = pending.get(userId);
+            if (messages == null) {
+                return drained;
+            }
+            for (Iterator<Pending> it = messages.iterator(); it.hasNext(); ) {
+                Pending entry = it.next();
+                if (destination.equals(entry.message().getDestination())) {
+                    drained.add(entry.message());
+                    it.remove();
+                }
+            }
+            if (messages.isEmpty()) {
+                pending.remove(userId);
+            }
+        }
+        return drained;
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.pending.sweep-interval-ms:1000}")
+    public void sweep() {
+        int count = sweep(System.currentTimeMillis());
+        if (count > 0) {
+            logger.warn("Mensagens descartadas sem que o destinatário reconectasse: {}", count);
+        }
+    }
+
+    int sweep(long now) {
+        int count = 0;
+        synchronized (pending) {
+            for (Iterator<Deque<Pending>> users = pending.values().iterator(); users.hasNext(); ) {
+                Deque<Pending> messages = users.next();
+                while (!messages.isEmpty() && messages.peekFirst().expiresAt() <= now) {
+                    messages.pollFirst();
+                    count++;
+                }
+                if (messages.isEmpty()) {
+                    users.remove();
+                }
+            }
+        }
+        expired.increment(count);
+        return count;
+    }
+
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presença dos usuários conectados por WebSocket. Cada frame recebido, inclusive os
+ * heartbeats STOMP, marca o usuário como visto nesta instância; a cada
+ * {@code presence.flush-interval-ms} as concessões dos usuários vistos são renovadas no
+ * ZSET {@value #LEASES_KEY} (score = fim da concessão) em um único pipeline. Quem para de
+ * enviar frames, inclusive por queda da instância, perde a concessão após
+ * {@code presence.lease-ms}. As mudanças de estado são gravadas em {@code users.is_online}
+ * com um UPDATE por estado a cada ciclo, em vez de uma escrita por login ou desconexão.
+ */
+@Service
+public class PresenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+    static final String LEASES_KEY = "presence:leases";
+
+    /**
+     * Remove até ARGV[2] concessões vencidas até ARGV[1] e as devolve; cada usuário
+     * vencido é entregue a uma única instância.
+     * KEYS: leases.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> EXPIRE_SCRIPT = new DefaultRedisScript<>("""
+            local users = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            for _, user in ipairs(users) do
+                redis.call('ZREM', KEYS[1], user)
+            end
+            return users
+            """, List.class);
+
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final UserRepository userRepository;
+    private final long leaseMs;
+    private final int batchSize;
+
+    private final Set<Long> seen = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Boolean> pendingStatus = new ConcurrentHashMap<>();
+    private final AtomicLong online = new AtomicLong();
+
+    public PresenceService(
+            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${presence.lease-ms:30000}") long leaseMs,
+            @Value("${presence.batch-size:1000}") int batchSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.userRepository = userRepository;
+        this.leaseMs = leaseMs;
+        this.batchSize = batchSize;
+
+        Gauge.builder("presence.online", online, AtomicLong::get)
+                .description("Usuários com concessão de presença válida")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra atividade do usuário nesta instância. Chamado a cada frame recebido, só
+     * altera memória local.
+     */
+    public void touch(Long userId) {
+        seen.add(userId);
+    }
+
+    /**
+     * A conexão do usuário nesta instância terminou: a concessão deixa de ser renovada
+     * por aqui e vence sozinha, a menos que outra conexão continue ativa.
+     */
+    public void disconnected(Long userId) {
+        seen.remove(userId);
+    }
+
+    /**
+     * Logout explícito: o usuário fica offline imediatamente.
+     */
+    public void loggedOut(Long userId) {
+        seen.remove(userId);
+        Long removed = stringRedisTemplate.opsForZSet().remove(LEASES_KEY, userId.toString());
+        if (removed != null && removed > 0) {
+            pendingStatus.put(userId, false);
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        return !getOnlineUsers(List.of(userId)).isEmpty();
+    }
+
+    /**
+     * Usuários, dentre os informados, com concessão válida, em uma ida ao Redis.
+     */
+    public Set<Long> getOnlineUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        List<Long> ids = new ArrayList<>(userIds);
+        List<Object> scores = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Long userId : ids) {
+                    operations.opsForZSet().score(LEASES_KEY, userId.toString());
+                }
+                return null;
+            }
+        });
+
+        long now = System.currentTimeMillis();
+        Set<Long> result = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (scores.get(i) instanceof Number leaseEnd && leaseEnd.doubleValue() > now) {
+                result.add(ids.get(i));
+            }
+        }
+        return result;
+    }
+
+    public long countOnline() {
+        Long count = stringRedisTemplate.opsForZSet().count(LEASES_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return count != null ? count : 0L;
+    }
+
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:5000}")
+    public void flush() {
+        try {
+            flush(System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.error("Erro ao atualizar presença: {}", e.getMessage());
+        }
+    }
+
+    void flush(long now) {
+        renewLeases(now);
+        expireLeases(now);
+        writePendingStatus();
+        online.set(countOnline());
+    }
+
+    private void renewLeases(long now) {
+        if (seen.isEmpty()) {
+            return;
+        }
+        List<Long> users = new ArrayList<>(seen);
+        seen.removeAll(users);
+
+        double leaseEnd = now + leaseMs;
+        List<Object> added = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Long userId : users) {
+                    operations.opsForZSet().add(LEASES_KEY, userId.toString(), leaseEnd);
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < users.size(); i++) {
+            if (Boolean.TRUE.equals(added.get(i))) {
+                pendingStatus.put(users.get(i), true);
+            }
+        }
+    }
+
+    private void expireLeases(long now) {
+        List<?> expired;
+        do {
+            expired = stringRedisTemplate.execute(EXPIRE_SCRIPT, List.of(LEASES_KEY),
+                    Long.toString(now), Integer.toString(batchSize));
+            if (expired == null) {
+                return;
+            }
+            for (Object userId : expired) {
+                pendingStatus.put(Long.parseLong(userId.toString()), false);
+            }
+        } while (expired.size() == batchSize);
+    }
+
+    private void writePendingStatus() {
+        if (pendingStatus.isEmpty()) {
+            return;
+        }
+        List<Long> cameOnline = new ArrayList<>();
+        List<Long> wentOffline = new ArrayList<>();
+        for (Long userId : new ArrayList<>(pendingStatus.keySet())) {
+            Boolean status = pendingStatus.remove(userId);
+            if (Boolean.TRUE.equals(status)) {
+                cameOnline.add(userId);
+            } else if (status != null) {
+                wentOffline.add(userId);
+            }
+        }
+
+        if (!cameOnline.isEmpty()) {
+            userRepository.updateOnlineStatus(cameOnline, true);
+        }
+        if (!wentOffline.isEmpty()) {
+            userRepository.updateOnlineStatus(wentOffline, false);
+        }
+    }
+}
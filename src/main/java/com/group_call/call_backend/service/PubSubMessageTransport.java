@@ -0,0 +1,148 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Transporte por Pub/Sub: cada instância assina o próprio canal
+ * {@value #NODE_CHANNEL_PREFIX}{@code <nodeId>} e as mensagens vão só para o canal da
+ * instância do destinatário, segundo o {@link UserNodeRegistry}; o canal global
+ * {@value #BROADCAST_CHANNEL} fica como fallback para quem não tem instância conhecida. A
+ * entrega não é confiável: se o usuário não está conectado quando a mensagem chega, ela
+ * fica no {@link PendingDeliveryBuffer} até ele se conectar ou até vencer.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "simple", matchIfMissing = true)
+@ConditionalOnProperty(name = "websocket.transport", havingValue = "pubsub", matchIfMissing = true)
+public class PubSubMessageTransport implements MessageTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PubSubMessageTransport.class);
+    static final String NODE_CHANNEL_PREFIX = "websocket:node:";
+    static final String BROADCAST_CHANNEL = "websocket:broadcast";
+
+    /**
+     * Publica no canal da instância do usuário; se ela não é conhecida ou ninguém assina o
+     * canal (instância caiu), remove o registro e publica no canal global. Retorna 1 se a
+     * mensagem foi direcionada e 0 se caiu no fallback.
+     * KEYS: user_node. ARGV: userId, prefixo dos canais, mensagem, canal global.
+     */
+    private static final RedisScript<Long> ROUTE_SCRIPT = new DefaultRedisScript<>("""
+            local node = redis.call('HGET', KEYS[1], ARGV[1])
+            if node then
+                if redis.call('PUBLISH', ARGV[2] .. node, ARGV[3]) > 0 then
+                    return 1
+                end
+                redis.call('HDEL', KEYS[1], ARGV[1])
+            end
+            redis.call('PUBLISH', ARGV[4], ARGV[3])
+            return 0
+            """, Long.class);
+
+    private static final RedisSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final UserNodeRegistry userNodeRegistry;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final WebSocketMessageCodec messageCodec;
+    private final PendingDeliveryBuffer pendingDeliveryBuffer;
+
+    public PubSubMessageTransport(
+            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            UserNodeRegistry userNodeRegistry,
+            RedisMessageListenerContainer redisMessageListenerContainer,
+            WebSocketMessageCodec messageCodec,
+            PendingDeliveryBuffer pendingDeliveryBuffer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.userNodeRegistry = userNodeRegistry;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.messageCodec = messageCodec;
+        this.pendingDeliveryBuffer = pendingDeliveryBuffer;
+    }
+
+    public String getNodeChannel() {
+        return NODE_CHANNEL_PREFIX + userNodeRegistry.getNodeId();
+    }
+
+    @Override
+    public void start(LocalDelivery delivery) {
+        String currentServerId = userNodeRegistry.getNodeId();
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+                try {
+                    WebSocketMessage wsMessage = messageCodec.decode(message.getBody());
+
+                    if (!delivery.deliver(wsMessage) && currentServerId.equals(wsMessage.getServerId())) {
+                        pendingDeliveryBuffer.add(wsMessage);
+                    }
+                } catch (Exception e) {
+                    logger.error("Erro ao processar mensagem Redis: {}", e.getMessage());
+                }
+        }, new ChannelTopic(BROADCAST_CHANNEL));
+
+        // Mensagens direcionadas a esta instância: o usuário pode estar reconectando
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+                try {
+                    WebSocketMessage wsMessage = messageCodec.decode(message.getBody());
+
+                    if (!delivery.deliver(wsMessage)) {
+                        pendingDeliveryBuffer.add(wsMessage);
+                    }
+                } catch (Exception e) {
+                    logger.error("Erro ao processar mensagem Redis: {}", e.getMessage());
+                }
+        }, new ChannelTopic(getNodeChannel()));
+    }
+
+    /**
+     * Entrega a mensagem à instância do usuário em uma única ida ao Redis. Retorna
+     * {@code false} quando precisou usar o canal global.
+     */
+    public boolean publish(Long userId, byte[] message) {
+        Long routed = stringRedisTemplate.execute(ROUTE_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                List.of(UserNodeRegistry.USER_NODE_KEY), bytes(userId.toString()), bytes(NODE_CHANNEL_PREFIX), message,
+                bytes(BROADCAST_CHANNEL));
+        return routed != null && routed == 1L;
+    }
+
+    /**
+     * Publica várias mensagens em um único pipeline, cada uma roteada como em
+     * {@link #publish}.
+     */
+    @Override
+    public void send(List<Outbound> messages) {
+        byte[] channelPrefix = bytes(NODE_CHANNEL_PREFIX);
+        byte[] broadcastChannel = bytes(BROADCAST_CHANNEL);
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Outbound outbound : messages) {
+                    operations.execute(ROUTE_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                            List.of(UserNodeRegistry.USER_NODE_KEY), bytes(outbound.userId().toString()), channelPrefix,
+                            outbound.message(), broadcastChannel);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,56 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.CallEntity;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Partição da fila de pareamento. Usuários só são pareados dentro da mesma partição,
+ * definida pelo tipo de chamada e por uma localidade opcional ("any" quando ausente).
+ */
+public record QueueShard(CallEntity.CallType callType, String locale) {
+
+    public static final String ANY_LOCALE = "any";
+    public static final QueueShard DEFAULT = new QueueShard(CallEntity.CallType.VIDEO, ANY_LOCALE);
+
+    private static final Pattern VALID_LOCALE = Pattern.compile("[a-z0-9_-]{1,16}");
+
+    public static QueueShard of(String callType, String locale) {
+        CallEntity.CallType type = CallEntity.CallType.VIDEO;
+        if (callType != null && !callType.isBlank()) {
+            try {
+                type = CallEntity.CallType.valueOf(callType.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tipo de chamada inválido: " + callType);
+            }
+        }
+
+        String normalized = locale != null ? locale.trim().toLowerCase(Locale.ROOT) : "";
+        if (!VALID_LOCALE.matcher(normalized).matches()) {
+            normalized = ANY_LOCALE;
+        }
+
+        return new QueueShard(type, normalized);
+    }
+
+    public static QueueShard parse(String name) {
+        int separator = name.indexOf(':');
+        return new QueueShard(CallEntity.CallType.valueOf(name.substring(0, separator)), name.substring(separator + 1));
+    }
+
+    public String name() {
+        return callType.name() + ":" + locale;
+    }
+
+    public boolean isWidest() {
+        return ANY_LOCALE.equals(locale);
+    }
+
+    /**
+     * Partição mais ampla para onde usuários que esperaram demais são movidos.
+     */
+    public QueueShard wider() {
+        return new QueueShard(callType, ANY_LOCALE);
+    }
+}
@@ -0,0 +1,131 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.group_call.call_backend.websocket.LocalSessionRegistry;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Envia periodicamente em {@code /queue/status} a posição e a espera estimada de cada
+ * usuário na fila conectado a esta instância. A estimativa usa médias móveis, por
+ * partição, do ritmo de pares formados e da espera de quem foi pareado, calculadas a
+ * partir dos contadores compartilhados no Redis; cada instância faz poucas idas ao Redis
+ * por ciclo, independentemente de quantos usuários atende. Os usuários vêm do
+ * {@link LocalSessionRegistry}: com o broker relay o {@code SimpUserRegistry} lista os de
+ * todas as instâncias, e cada uma mandaria o status a todos.
+ */
+@Component
+public class QueueStatusPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueStatusPublisher.class);
+    private static final double SMOOTHING = 0.3;
+
+    private final RedisMatchmakingService redisMatchmaking;
+    private final MatchmakingMetrics matchmakingMetrics;
+    private final LocalSessionRegistry localSessionRegistry;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final Map<String, ShardRate> rates = new HashMap<>();
+    private Map<String, Long> lastStats;
+    private long lastStatsAt;
+
+    private static final class ShardRate {
+        private double pairsPerSecond;
+        private double meanWaitMillis = Double.NaN;
+    }
+
+    public QueueStatusPublisher(RedisMatchmakingService redisMatchmaking,
+            MatchmakingMetrics matchmakingMetrics,
+            LocalSessionRegistry localSessionRegistry,
+            SimpMessagingTemplate messagingTemplate) {
+        this.redisMatchmaking = redisMatchmaking;
+        this.matchmakingMetrics = matchmakingMetrics;
+        this.localSessionRegistry = localSessionRegistry;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${matchmaking.status.interval-ms:2000}")
+    public void publish() {
+        try {
+            long now = System.currentTimeMillis();
+            updateRates(redisMatchmaking.getMatchStats(), now);
+            matchmakingMetrics.setQueueDepth(redisMatchmaking.getQueueSize());
+
+            List<Long> localUsers = localSessionRegistry.getUserIds();
+            Map<Long, QueuePosition> positions = redisMatchmaking.getQueuePositions(localUsers);
+            positions.forEach((userId, position) -> messagingTemplate.convertAndSendToUser(
+                    userId.toString(), "/queue/status", buildStatus(position, now)));
+        } catch (Exception e) {
+            logger.error("Erro ao publicar status da fila: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Espera estimada, em segundos, de quem está na posição informada, ou {@code null}
+     * enquanto não há histórico para a partição.
+     */
+    public synchronized Long estimateWaitSeconds(QueuePosition position, long now) {
+        ShardRate rate = rates.get(position.shard().name());
+        if (rate == null) {
+            return null;
+        }
+
+        double waited = Math.max(0, now - position.enqueuedAt());
+        double byRate = rate.pairsPerSecond > 0 ? (position.rank() / 2 + 1) / rate.pairsPerSecond * 1000 : Double.NaN;
+        double byWait = Double.isNaN(rate.meanWaitMillis) ? Double.NaN : rate.meanWaitMillis - waited;
+
+        double estimate;
+        if (Double.isNaN(byRate) && Double.isNaN(byWait)) {
+            return null;
+        } else if (Double.isNaN(byRate)) {
+            estimate = byWait;
+        } else if (Double.isNaN(byWait)) {
+            estimate = byRate;
+        } else {
+            estimate = Math.max(byRate, byWait);
+        }
+        return Math.round(Math.max(0, estimate) / 1000);
+    }
+
+    synchronized void updateRates(Map<String, Long> stats, long now) {
+        if (lastStats != null && now > lastStatsAt) {
+            double seconds = (now - lastStatsAt) / 1000.0;
+            for (Map.Entry<String, Long> entry : stats.entrySet()) {
+                if (!entry.getKey().endsWith(":pairs")) {
+                    continue;
+                }
+                String shard = entry.getKey().substring(0, entry.getKey().length() - ":pairs".length());
+                long pairs = entry.getValue() - lastStats.getOrDefault(entry.getKey(), 0L);
+                long waitMs = stats.getOrDefault(shard + ":wait_ms", 0L) - lastStats.getOrDefault(shard + ":wait_ms", 0L);
+
+                ShardRate rate = rates.computeIfAbsent(shard, key -> new ShardRate());
+                rate.pairsPerSecond += SMOOTHING * (pairs / seconds - rate.pairsPerSecond);
+                if (pairs > 0) {
+                    double meanWait = (double) waitMs / (pairs * 2);
+                    rate.meanWaitMillis = Double.isNaN(rate.meanWaitMillis)
+                            ? meanWait
+                            : rate.meanWaitMillis + SMOOTHING * (meanWait - rate.meanWaitMillis);
+                }
+            }
+        }
+        lastStats = stats;
+        lastStatsAt = now;
+    }
+
+    private Map<String, Object> buildStatus(QueuePosition position, long now) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("status", "waiting");
+        status.put("message", "Procurando alguém para conversar...");
+        status.put("position", position.rank() + 1);
+        status.put("waitedSeconds", Math.max(0, now - position.enqueuedAt()) / 1000);
+        status.put("estimatedWaitSeconds", estimateWaitSeconds(position, now));
+        return status;
+    }
+}
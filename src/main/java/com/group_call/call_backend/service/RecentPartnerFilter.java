@@ -0,0 +1,178 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filtro de Bloom rotativo por usuário com os parceiros encontrados recentemente. Cada
+ * usuário guarda duas gerações de {@code BITS} bits (atual e anterior); a cada
+ * {@code matchmaking.recent-partners.rotation-ms} a geração atual passa a ser a anterior,
+ * então um parceiro é lembrado entre uma e duas rotações. A consulta é O(1) e não toca o
+ * banco. Pares formados em qualquer instância são replicados pelo canal Redis
+ * {@value #CHANNEL}, de modo que todas as instâncias evitam os mesmos reencontros.
+ */
+@Component
+public class RecentPartnerFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentPartnerFilter.class);
+    private static final String CHANNEL = "matchmaking:recent_partners";
+    private static final int BITS = 256;
+    private static final int WORDS = BITS / 64;
+    private static final int HASHES = 3;
+
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final long rotationMs;
+    private final Map<Long, Filter> filters;
+
+    private static final class Filter {
+        private long generation;
+        private final long[] current = new long[WORDS];
+        private final long[] previous = new long[WORDS];
+    }
+
+    public RecentPartnerFilter(
+            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            RedisMessageListenerContainer redisMessageListenerContainer,
+            @Value("${matchmaking.recent-partners.rotation-ms:600000}") long rotationMs,
+            @Value("${matchmaking.recent-partners.max-users:100000}") int maxUsers) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.rotationMs = rotationMs;
+        this.filters = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Filter> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                String body = new String(message.getBody(), StandardCharsets.UTF_8);
+                long generation = currentGeneration();
+                for (String pair : body.split(",")) {
+                    int separator = pair.indexOf(':');
+                    record(Long.parseLong(pair.substring(0, separator)),
+                            Long.parseLong(pair.substring(separator + 1)), generation);
+                }
+            } catch (Exception e) {
+                logger.error("Erro ao processar parceiros recentes: {}", e.getMessage());
+            }
+        }, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Registra os pares formados localmente e os replica para as demais instâncias.
+     */
+    public void remember(List<QueuedUser[]> pairs) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+
+        long generation = currentGeneration();
+        StringBuilder body = new StringBuilder(pairs.size() * 16);
+        for (QueuedUser[] pair : pairs) {
+            record(pair[0].userId(), pair[1].userId(), generation);
+            if (body.length() > 0) {
+                body.append(',');
+            }
+            body.append(pair[0].userId()).append(':').append(pair[1].userId());
+        }
+
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, body.toString());
+        } catch (Exception e) {
+            logger.warn("Falha ao replicar parceiros recentes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indica se os dois usuários provavelmente se encontraram recentemente. Falsos
+     * positivos são possíveis (e raros); falsos negativos não.
+     */
+    public boolean mightHaveMet(Long userId, Long partnerId) {
+        long generation = currentGeneration();
+        synchronized (filters) {
+            Filter filter = filters.get(userId);
+            if (filter == null) {
+                return false;
+            }
+            rotate(filter, generation);
+            return contains(filter.current, partnerId) || contains(filter.previous, partnerId);
+        }
+    }
+
+    private void record(Long userId, Long partnerId, long generation) {
+        synchronized (filters) {
+            add(filters.computeIfAbsent(userId, key -> new Filter()), partnerId, generation);
+            add(filters.computeIfAbsent(partnerId, key -> new Filter()), userId, generation);
+        }
+    }
+
+    private void add(Filter filter, Long partnerId, long generation) {
+        rotate(filter, generation);
+        long hash = mix(partnerId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, BITS);
+            filter.current[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean contains(long[] bits, Long partnerId) {
+        long hash = mix(partnerId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, BITS);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotate(Filter filter, long generation) {
+        if (filter.generation == generation) {
+            return;
+        }
+        if (filter.generation == generation - 1) {
+            System.arraycopy(filter.current, 0, filter.previous, 0, WORDS);
+        } else {
+            Arrays.fill(filter.previous, 0L);
+        }
+        Arrays.fill(filter.current, 0L);
+        filter.generation = generation;
+    }
+
+    private long currentGeneration() {
+        return System.currentTimeMillis() / rotationMs;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
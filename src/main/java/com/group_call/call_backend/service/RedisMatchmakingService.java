@@ -2,10 +2,19 @@ package com.group_call.call_backend.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -13,60 +22,689 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class RedisMatchmakingService {
 
-    private final RedisTemplate<String, Long> redisTemplate;
     private final RedisTemplate<String, String> stringRedisTemplate;
 
-    private static final String QUEUE_KEY = "matchmaking:queue";
+    private static final String QUEUE_PREFIX = "matchmaking:waiting:";
+    private static final String SHARDS_KEY = "matchmaking:shards";
+    private static final String USER_SHARD_KEY = "matchmaking:user_shard";
+    private static final String USER_PREFERENCE_KEY = "matchmaking:user_preference";
+    private static final String USER_INTERESTS_KEY = "matchmaking:user_interests";
+    private static final String MATCH_STATS_KEY = "matchmaking:stats";
+    private static final String RESERVATION_PREFIX = "matchmaking:reservation:";
+    private static final String RESERVATION_SEQ_KEY = "matchmaking:reservation_seq";
+    private static final String RESERVATION_DEADLINES_KEY = "matchmaking:reservation_deadlines";
+    private static final String USER_RESERVATION_KEY = "matchmaking:user_reservation";
     private static final String USER_IN_CALL_PREFIX = "matchmaking:in_call:";
-    private static final String USER_SESSION_PREFIX = "matchmaking:session:";
+    private static final String ACTIVE_CALL_KEY = "matchmaking:active_call";
     private static final int SESSION_TIMEOUT_MINUTES = 30;
 
+    /**
+     * Coloca o usuário na partição indicada, a menos que ele já esteja em alguma
+     * partição; assim um usuário nunca aparece duas vezes na fila.
+     * KEYS: user_shard, fila da partição, shards. ARGV: userId, score, partição.
+     */
+    private static final RedisScript<Long> JOIN_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then
+                return 0
+            end
+            redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])
+            redis.call('SADD', KEYS[3], ARGV[3])
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS: user_shard. ARGV: userId, prefixo das filas.
+     */
+    private static final RedisScript<Long> LEAVE_SCRIPT = new DefaultRedisScript<>("""
+            local shard = redis.call('HGET', KEYS[1], ARGV[1])
+            if not shard then
+                return 0
+            end
+            redis.call('ZREM', ARGV[2] .. shard, ARGV[1])
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * Lê a janela inicial de uma partição, devolvendo para cada usuário o instante em que
+     * entrou na fila, seus interesses e sua reputação. Partições vazias saem do conjunto
+     * de shards.
+     * KEYS: fila da partição, interesses, shards, somas e quantidades de avaliações.
+     * ARGV: tamanho da janela, partição.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> PEEK_SCRIPT = new DefaultRedisScript<>("""
+            local users = redis.call('ZRANGE', KEYS[1], 0, tonumber(ARGV[1]) - 1, 'WITHSCORES')
+            if #users == 0 then
+                redis.call('SREM', KEYS[3], ARGV[2])
+                return {}
+            end
+            local result = {}
+            for i = 1, #users, 2 do
+                result[#result + 1] = users[i]
+                result[#result + 1] = users[i + 1]
+                result[#result + 1] = redis.call('HGET', KEYS[2], users[i]) or ''
+                result[#result + 1] = redis.call('HGET', KEYS[4], users[i]) or ''
+                result[#result + 1] = redis.call('HGET', KEYS[5], users[i]) or ''
+            end
+            return result
+            """, List.class);
+
+    /**
+     * Confirma de forma atômica os pares escolhidos por esta instância: cada par só sai da
+     * fila se os dois usuários ainda estiverem nela. Como todas as instâncias disputam as
+     * mesmas filas, isso dispensa qualquer lock local na JVM.
+     * KEYS: fila da partição, user_shard. ARGV: userIds dos pares em sequência.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_PAIRS_SCRIPT = new DefaultRedisScript<>("""
+            local claimed = {}
+            for i = 1, #ARGV, 2 do
+                if redis.call('ZSCORE', KEYS[1], ARGV[i]) and redis.call('ZSCORE', KEYS[1], ARGV[i + 1]) then
+                    redis.call('ZREM', KEYS[1], ARGV[i], ARGV[i + 1])
+                    redis.call('HDEL', KEYS[2], ARGV[i], ARGV[i + 1])
+                    claimed[#claimed + 1] = 1
+                else
+                    claimed[#claimed + 1] = 0
+                end
+            end
+            return claimed
+            """, List.class);
+
+    /**
+     * Move para a partição mais ampla os usuários que entraram antes de ARGV[1],
+     * preservando o horário de entrada.
+     * KEYS: fila da partição, fila mais ampla, user_shard, shards.
+     * ARGV: corte (epoch millis), limite, partição mais ampla.
+     */
+    private static final RedisScript<Long> AGE_SCRIPT = new DefaultRedisScript<>("""
+            local users = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'WITHSCORES', 'LIMIT', 0, tonumber(ARGV[2]))
+            for i = 1, #users, 2 do
+                redis.call('ZREM', KEYS[1], users[i])
+                redis.call('ZADD', KEYS[2], users[i + 1], users[i])
+                redis.call('HSET', KEYS[3], users[i], ARGV[3])
+            end
+            if #users > 0 then
+                redis.call('SADD', KEYS[4], ARGV[3])
+            end
+            return #users / 2
+            """, Long.class);
+
+    /**
+     * Reserva os pares já retirados da fila enquanto os dois usuários confirmam o match.
+     * O prazo de cada reserva fica no ZSET de deadlines, varrido pelo loop de pareamento.
+     * KEYS: deadlines, user_reservation, sequência.
+     * ARGV: prefixo das reservas, prazo (epoch millis), partição e, por par, u1, t1, u2, t2.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local ids = {}
+            for i = 4, #ARGV, 4 do
+                local id = tostring(redis.call('INCR', KEYS[3]))
+                redis.call('HSET', ARGV[1] .. id, 'u1', ARGV[i], 't1', ARGV[i + 1],
+                        'u2', ARGV[i + 2], 't2', ARGV[i + 3], 'shard', ARGV[3])
+                redis.call('ZADD', KEYS[1], ARGV[2], id)
+                redis.call('HSET', KEYS[2], ARGV[i], id, ARGV[i + 2], id)
+                ids[#ids + 1] = id
+            end
+            return ids
+            """, List.class);
+
+    /**
+     * Registra a confirmação de um usuário (campos a1/a2, que completam os sete campos da
+     * reserva). Quando os dois confirmaram, a reserva é removida; uma única instância
+     * recebe o par e grava a chamada.
+     * KEYS: deadlines, user_reservation.
+     * ARGV: prefixo das reservas, reserva, userId.
+     * Retorna {'0'} se a reserva não existe ou não é do usuário, {'1'} enquanto falta o
+     * parceiro e {'2', u1, t1, u2, t2, partição} na segunda confirmação.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ACCEPT_SCRIPT = new DefaultRedisScript<>("""
+            local key = ARGV[1] .. ARGV[2]
+            local r = redis.call('HMGET', key, 'u1', 't1', 'u2', 't2', 'shard')
+            local field
+            if r[1] == ARGV[3] then
+                field = 'a1'
+            elseif r[3] == ARGV[3] then
+                field = 'a2'
+            else
+                return {'0'}
+            end
+            redis.call('HSET', key, field, '1')
+            if redis.call('HLEN', key) < 7 then
+                return {'1'}
+            end
+            redis.call('DEL', key)
+            redis.call('ZREM', KEYS[1], ARGV[2])
+            redis.call('HDEL', KEYS[2], r[1], r[3])
+            return {'2', r[1], r[2], r[3], r[4], r[5]}
+            """, List.class);
+
+    /**
+     * Remove as reservas vencidas até ARGV[2], devolvendo para cada uma
+     * u1, t1, a1, u2, t2, a2 e a partição. O vínculo usuário → reserva só é apagado se
+     * ainda aponta para a reserva vencida.
+     * KEYS: deadlines, user_reservation. ARGV: prefixo das reservas, agora, limite.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> EXPIRE_SCRIPT = new DefaultRedisScript<>("""
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[2], 'LIMIT', 0, tonumber(ARGV[3]))
+            local result = {}
+            for _, id in ipairs(ids) do
+                local key = ARGV[1] .. id
+                redis.call('ZREM', KEYS[1], id)
+                if redis.call('EXISTS', key) == 1 then
+                    local r = redis.call('HMGET', key, 'u1', 't1', 'a1', 'u2', 't2', 'a2', 'shard')
+                    redis.call('DEL', key)
+                    for _, user in ipairs({r[1], r[4]}) do
+                        if redis.call('HGET', KEYS[2], user) == id then
+                            redis.call('HDEL', KEYS[2], user)
+                        end
+                    end
+                    result[#result + 1] = r[1]
+                    result[#result + 1] = r[2]
+                    result[#result + 1] = r[3] or '0'
+                    result[#result + 1] = r[4]
+                    result[#result + 1] = r[5]
+                    result[#result + 1] = r[6] or '0'
+                    result[#result + 1] = r[7]
+                end
+            end
+            return result
+            """, List.class);
+
+    /**
+     * Desfaz a reserva pendente de um usuário que desistiu, devolvendo o parceiro, o
+     * instante em que ele entrou na fila e a partição.
+     * KEYS: deadlines, user_reservation. ARGV: prefixo das reservas, userId.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CANCEL_SCRIPT = new DefaultRedisScript<>("""
+            local id = redis.call('HGET', KEYS[2], ARGV[2])
+            if not id then
+                return {}
+            end
+            local key = ARGV[1] .. id
+            redis.call('HDEL', KEYS[2], ARGV[2])
+            redis.call('ZREM', KEYS[1], id)
+            if redis.call('EXISTS', key) == 0 then
+                return {}
+            end
+            local r = redis.call('HMGET', key, 'u1', 't1', 'u2', 't2', 'shard')
+            redis.call('DEL', key)
+            local partner = r[1] == ARGV[2] and r[3] or r[1]
+            if redis.call('HGET', KEYS[2], partner) == id then
+                redis.call('HDEL', KEYS[2], partner)
+            end
+            if r[1] == ARGV[2] then
+                return {r[3], r[4], r[5]}
+            end
+            return {r[1], r[2], r[5]}
+            """, List.class);
+
+    /**
+     * Remove o vínculo usuário → chamada apenas dos usuários que ainda apontam para a
+     * chamada encerrada, preservando quem já entrou em outra.
+     * KEYS: active_call. ARGV: callId, userIds...
+     */
+    private static final RedisScript<Long> CLEAR_ACTIVE_CALL_SCRIPT = new DefaultRedisScript<>("""
+            local removed = 0
+            for i = 2, #ARGV do
+                if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[1] then
+                    removed = removed + redis.call('HDEL', KEYS[1], ARGV[i])
+                end
+            end
+            return removed
+            """, Long.class);
+
+    /**
+     * Desfaz o estado de uma chamada encerrada sem tocar no de quem já está em outra.
+     * KEYS: active_call, in_call do user1, in_call do user2. ARGV: callId, user1, user2.
+     */
+    private static final RedisScript<Long> CLEAR_ENDED_CALL_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[2]) == ARGV[3] then
+                redis.call('DEL', KEYS[2])
+            end
+            if redis.call('GET', KEYS[3]) == ARGV[2] then
+                redis.call('DEL', KEYS[3])
+            end
+            for i = 2, 3 do
+                if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[1] then
+                    redis.call('HDEL', KEYS[1], ARGV[i])
+                end
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * Usuário na fila junto com o instante (epoch millis) em que entrou nela e os
+     * interesses informados.
+     */
+    public record QueuedUser(Long userId, long enqueuedAt, Set<String> interests, double reputation) {
+
+        public QueuedUser(Long userId, long enqueuedAt, Set<String> interests) {
+            this(userId, enqueuedAt, interests, Double.NaN);
+        }
+
+        public QueuedUser(Long userId, long enqueuedAt) {
+            this(userId, enqueuedAt, Set.of());
+        }
+    }
+
+    /**
+     * Par que confirmou o match e já pode virar uma chamada.
+     */
+    public record ConfirmedReservation(QueuedUser user1, QueuedUser user2, QueueShard shard) {
+    }
+
+    /**
+     * Reserva que venceu sem as duas confirmações.
+     */
+    public record ExpiredReservation(QueuedUser user1, boolean user1Accepted,
+            QueuedUser user2, boolean user2Accepted, QueueShard shard) {
+    }
+
+    /**
+     * Posição de um usuário na sua partição (0 = primeiro da fila).
+     */
+    public record QueuePosition(QueueShard shard, long rank, long enqueuedAt) {
+    }
+
     @Autowired
-    public RedisMatchmakingService(RedisTemplate<String, Long> redisTemplate,
-                                   @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public RedisMatchmakingService(@Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
     }
 
-    public void joinQueue(Long userId) {
-        redisTemplate.opsForList().rightPush(QUEUE_KEY, userId);
+    /**
+     * Coloca o usuário na partição ordenada pelo horário de entrada. Um usuário que já
+     * está na fila mantém a posição original, então entradas duplicadas são impossíveis.
+     * Partição e interesses ficam salvos como preferência para as próximas entradas.
+     */
+    public void joinQueue(Long userId, QueueShard shard, Set<String> interests) {
+        stringRedisTemplate.opsForHash().put(USER_PREFERENCE_KEY, userId.toString(), shard.name());
+        if (interests.isEmpty()) {
+            stringRedisTemplate.opsForHash().delete(USER_INTERESTS_KEY, userId.toString());
+        } else {
+            stringRedisTemplate.opsForHash().put(USER_INTERESTS_KEY, userId.toString(), String.join(",", interests));
+        }
+        enqueue(userId, shard, System.currentTimeMillis());
+    }
+
+    /**
+     * Volta à fila usando a partição e os interesses informados na última entrada.
+     */
+    public void rejoinQueue(Long userId, QueueShard shard) {
+        enqueue(userId, shard, System.currentTimeMillis());
+    }
+
+    /**
+     * Devolve à fila um usuário que foi retirado sem ser pareado, preservando a posição.
+     */
+    public void requeue(QueueShard shard, QueuedUser user) {
+        enqueue(user.userId(), shard, user.enqueuedAt());
+    }
+
+    private void enqueue(Long userId, QueueShard shard, long score) {
+        stringRedisTemplate.execute(JOIN_SCRIPT,
+                List.of(USER_SHARD_KEY, QUEUE_PREFIX + shard.name(), SHARDS_KEY),
+                userId.toString(), Long.toString(score), shard.name());
+    }
+
+    /**
+     * Última partição escolhida pelo usuário, usada quando ele volta à fila sem
+     * informar preferências (por exemplo em "próxima pessoa").
+     */
+    public QueueShard getPreferredShard(Long userId) {
+        Object name = stringRedisTemplate.opsForHash().get(USER_PREFERENCE_KEY, userId.toString());
+        return name != null ? QueueShard.parse(name.toString()) : QueueShard.DEFAULT;
     }
 
     public void leaveQueue(Long userId) {
-        redisTemplate.opsForList().remove(QUEUE_KEY, 1, userId);
+        stringRedisTemplate.execute(LEAVE_SCRIPT, List.of(USER_SHARD_KEY), userId.toString(), QUEUE_PREFIX);
     }
 
-    public Optional<Long[]> tryMatch() {
-        Long user1 = redisTemplate.opsForList().leftPop(QUEUE_KEY);
-        Long user2 = redisTemplate.opsForList().leftPop(QUEUE_KEY);
+    public boolean isInQueue(Long userId) {
+        return stringRedisTemplate.opsForHash().hasKey(USER_SHARD_KEY, userId.toString());
+    }
 
-        if (user1 != null && user2 != null) {
-            return Optional.of(new Long[]{user1, user2});
+    public Set<QueueShard> getActiveShards() {
+        Set<String> names = stringRedisTemplate.opsForSet().members(SHARDS_KEY);
+        if (names == null || names.isEmpty()) {
+            return Set.of();
         }
+        Set<QueueShard> shards = new HashSet<>();
+        for (String name : names) {
+            shards.add(QueueShard.parse(name));
+        }
+        return shards;
+    }
 
-        if (user1 != null) {
-            redisTemplate.opsForList().leftPush(QUEUE_KEY, user1);
+    public List<QueuedUser> peekQueue(QueueShard shard, int limit) {
+        @SuppressWarnings("unchecked")
+        List<String> entries = stringRedisTemplate.execute(PEEK_SCRIPT,
+                List.of(QUEUE_PREFIX + shard.name(), USER_INTERESTS_KEY, SHARDS_KEY,
+                        ReputationService.SUM_KEY, ReputationService.COUNT_KEY),
+                Integer.toString(limit), shard.name());
+
+        if (entries == null || entries.isEmpty()) {
+            return List.of();
         }
 
-        return Optional.empty();
+        List<QueuedUser> users = new ArrayList<>(entries.size() / 5);
+        for (int i = 0; i + 4 < entries.size(); i += 5) {
+            String interests = entries.get(i + 2);
+            users.add(new QueuedUser(
+                    Long.parseLong(entries.get(i)),
+                    parseScore(entries.get(i + 1)),
+                    interests.isEmpty() ? Set.of() : Set.of(interests.split(",")),
+                    ReputationService.average(entries.get(i + 3), entries.get(i + 4))));
+        }
+        return users;
+    }
+
+    /**
+     * Retira da fila os pares escolhidos, devolvendo apenas os que ainda estavam
+     * completos (os demais foram disputados por outra instância ou saíram da fila).
+     */
+    public List<QueuedUser[]> claimPairs(QueueShard shard, List<QueuedUser[]> pairs) {
+        if (pairs.isEmpty()) {
+            return List.of();
+        }
+
+        Object[] userIds = new Object[pairs.size() * 2];
+        for (int i = 0; i < pairs.size(); i++) {
+            userIds[i * 2] = pairs.get(i)[0].userId().toString();
+            userIds[i * 2 + 1] = pairs.get(i)[1].userId().toString();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Number> claimed = stringRedisTemplate.execute(CLAIM_PAIRS_SCRIPT,
+                List.of(QUEUE_PREFIX + shard.name(), USER_SHARD_KEY), userIds);
+
+        List<QueuedUser[]> result = new ArrayList<>(pairs.size());
+        for (int i = 0; claimed != null && i < claimed.size(); i++) {
+            if (claimed.get(i).longValue() == 1L) {
+                result.add(pairs.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Move para a partição mais ampla até {@code limit} usuários que entraram na fila
+     * antes de {@code cutoffMillis}. Retorna quantos foram movidos.
+     */
+    public long ageShard(QueueShard shard, long cutoffMillis, int limit) {
+        if (shard.isWidest()) {
+            return 0;
+        }
+        QueueShard wider = shard.wider();
+        Long moved = stringRedisTemplate.execute(AGE_SCRIPT,
+                List.of(QUEUE_PREFIX + shard.name(), QUEUE_PREFIX + wider.name(), USER_SHARD_KEY, SHARDS_KEY),
+                Long.toString(cutoffMillis), Integer.toString(limit), wider.name());
+        return moved != null ? moved : 0L;
+    }
+
+    /**
+     * Cria uma reserva com prazo {@code deadlineMillis} para cada par, na mesma ordem.
+     */
+    public List<Long> reservePairs(QueueShard shard, List<QueuedUser[]> pairs, long deadlineMillis) {
+        if (pairs.isEmpty()) {
+            return List.of();
+        }
+
+        Object[] args = new Object[3 + pairs.size() * 4];
+        args[0] = RESERVATION_PREFIX;
+        args[1] = Long.toString(deadlineMillis);
+        args[2] = shard.name();
+        for (int i = 0; i < pairs.size(); i++) {
+            QueuedUser[] pair = pairs.get(i);
+            args[3 + i * 4] = pair[0].userId().toString();
+            args[4 + i * 4] = Long.toString(pair[0].enqueuedAt());
+            args[5 + i * 4] = pair[1].userId().toString();
+            args[6 + i * 4] = Long.toString(pair[1].enqueuedAt());
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> ids = stringRedisTemplate.execute(RESERVE_SCRIPT,
+                List.of(RESERVATION_DEADLINES_KEY, USER_RESERVATION_KEY, RESERVATION_SEQ_KEY), args);
+
+        List<Long> reservationIds = new ArrayList<>(pairs.size());
+        for (Object id : ids) {
+            reservationIds.add(Long.parseLong(id.toString()));
+        }
+        return reservationIds;
+    }
+
+    /**
+     * Registra a confirmação do usuário. Retorna o par quando esta foi a segunda
+     * confirmação, vazio quando ainda falta o parceiro.
+     *
+     * @throws IllegalStateException se a reserva não existe mais ou não é do usuário
+     */
+    public Optional<ConfirmedReservation> acceptReservation(Long reservationId, Long userId) {
+        @SuppressWarnings("unchecked")
+        List<Object> result = stringRedisTemplate.execute(ACCEPT_SCRIPT,
+                List.of(RESERVATION_DEADLINES_KEY, USER_RESERVATION_KEY),
+                RESERVATION_PREFIX, reservationId.toString(), userId.toString());
+
+        String status = result != null && !result.isEmpty() ? result.get(0).toString() : "0";
+        if ("0".equals(status)) {
+            throw new IllegalStateException("Pareamento expirado ou inválido");
+        }
+        if ("1".equals(status)) {
+            return Optional.empty();
+        }
+        return Optional.of(new ConfirmedReservation(
+                new QueuedUser(Long.parseLong(result.get(1).toString()), Long.parseLong(result.get(2).toString())),
+                new QueuedUser(Long.parseLong(result.get(3).toString()), Long.parseLong(result.get(4).toString())),
+                QueueShard.parse(result.get(5).toString())));
+    }
+
+    public List<ExpiredReservation> expireReservations(long nowMillis, int limit) {
+        @SuppressWarnings("unchecked")
+        List<Object> entries = stringRedisTemplate.execute(EXPIRE_SCRIPT,
+                List.of(RESERVATION_DEADLINES_KEY, USER_RESERVATION_KEY),
+                RESERVATION_PREFIX, Long.toString(nowMillis), Integer.toString(limit));
+        if (entries == null || entries.isEmpty()) {
+            return List.of();
+        }
+
+        List<ExpiredReservation> expired = new ArrayList<>(entries.size() / 7);
+        for (int i = 0; i + 6 < entries.size(); i += 7) {
+            expired.add(new ExpiredReservation(
+                    new QueuedUser(Long.parseLong(entries.get(i).toString()), Long.parseLong(entries.get(i + 1).toString())),
+                    "1".equals(entries.get(i + 2).toString()),
+                    new QueuedUser(Long.parseLong(entries.get(i + 3).toString()), Long.parseLong(entries.get(i + 4).toString())),
+                    "1".equals(entries.get(i + 5).toString()),
+                    QueueShard.parse(entries.get(i + 6).toString())));
+        }
+        return expired;
+    }
+
+    /**
+     * Desfaz a reserva pendente do usuário, se houver, e devolve o parceiro à fila na
+     * posição original. Retorna o parceiro afetado.
+     */
+    public Optional<Long> cancelReservation(Long userId) {
+        @SuppressWarnings("unchecked")
+        List<Object> result = stringRedisTemplate.execute(CANCEL_SCRIPT,
+                List.of(RESERVATION_DEADLINES_KEY, USER_RESERVATION_KEY),
+                RESERVATION_PREFIX, userId.toString());
+        if (result == null || result.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Long partnerId = Long.parseLong(result.get(0).toString());
+        requeue(QueueShard.parse(result.get(2).toString()),
+                new QueuedUser(partnerId, Long.parseLong(result.get(1).toString())));
+        return Optional.of(partnerId);
+    }
+
+    /**
+     * Reserva pendente do usuário, usada por clientes que reconectam antes de responder.
+     */
+    public Optional<Long> getReservationId(Long userId) {
+        Object id = stringRedisTemplate.opsForHash().get(USER_RESERVATION_KEY, userId.toString());
+        return id != null ? Optional.of(Long.parseLong(id.toString())) : Optional.empty();
+    }
+
+    private static long parseScore(String score) {
+        return (long) Double.parseDouble(score);
     }
 
     public Long getQueueSize() {
-        Long size = redisTemplate.opsForList().size(QUEUE_KEY);
+        Long size = stringRedisTemplate.opsForHash().size(USER_SHARD_KEY);
         return size != null ? size : 0L;
     }
 
-    public List<Long> getQueueUsers() {
-        Long size = getQueueSize();
-        if (size == 0) {
+    /**
+     * Posição na fila dos usuários informados que estão aguardando, em duas idas ao
+     * Redis independentemente da quantidade de usuários.
+     */
+    public Map<Long, QueuePosition> getQueuePositions(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object> fields = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            fields.add(userId.toString());
+        }
+        List<Object> shardNames = stringRedisTemplate.opsForHash().multiGet(USER_SHARD_KEY, fields);
+
+        List<Long> queued = new ArrayList<>();
+        List<QueueShard> shards = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            if (shardNames.get(i) != null) {
+                queued.add(userIds.get(i));
+                shards.add(QueueShard.parse(shardNames.get(i).toString()));
+            }
+        }
+        if (queued.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (int i = 0; i < queued.size(); i++) {
+                    String key = QUEUE_PREFIX + shards.get(i).name();
+                    operations.opsForZSet().rank(key, queued.get(i).toString());
+                    operations.opsForZSet().score(key, queued.get(i).toString());
+                }
+                return null;
+            }
+        });
+
+        Map<Long, QueuePosition> positions = new HashMap<>();
+        for (int i = 0; i < queued.size(); i++) {
+            Object rank = results.get(i * 2);
+            Object score = results.get(i * 2 + 1);
+            if (rank != null && score != null) {
+                positions.put(queued.get(i), new QueuePosition(shards.get(i),
+                        ((Number) rank).longValue(), ((Number) score).longValue()));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Acumula, por partição, quantos pares foram formados e a soma das esperas dos
+     * usuários pareados. Os contadores são compartilhados por todas as instâncias.
+     */
+    public void recordMatchStats(QueueShard shard, long pairs, long totalWaitMillis) {
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.opsForHash().increment(MATCH_STATS_KEY, shard.name() + ":pairs", pairs);
+                operations.opsForHash().increment(MATCH_STATS_KEY, shard.name() + ":wait_ms", totalWaitMillis);
+                return null;
+            }
+        });
+    }
+
+    public Map<String, Long> getMatchStats() {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(MATCH_STATS_KEY);
+        Map<String, Long> stats = new HashMap<>(entries.size());
+        entries.forEach((field, value) -> stats.put(field.toString(), Long.parseLong(value.toString())));
+        return stats;
+    }
+
+    /**
+     * Página de uma partição da fila em ordem de chegada, começando em {@code offset}.
+     */
+    public List<Long> getQueueUsers(QueueShard shard, long offset, int limit) {
+        Set<String> users = stringRedisTemplate.opsForZSet().range(QUEUE_PREFIX + shard.name(), offset, offset + limit - 1);
+        if (users == null) {
             return List.of();
         }
-        return redisTemplate.opsForList().range(QUEUE_KEY, 0, -1);
+        List<Long> userIds = new ArrayList<>(users.size());
+        for (String user : users) {
+            userIds.add(Long.parseLong(user));
+        }
+        return userIds;
     }
 
-    public void setUserInCall(Long userId, Long partnerId) {
-        String key = USER_IN_CALL_PREFIX + userId;
-        stringRedisTemplate.opsForValue().set(key, partnerId.toString(), SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    /**
+     * Marca os dois usuários como em chamada e registra a chamada ativa de cada um, em
+     * uma única ida ao Redis.
+     */
+    public void setActiveCall(Long callId, Long user1Id, Long user2Id) {
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.opsForValue().set(USER_IN_CALL_PREFIX + user1Id, user2Id.toString(),
+                        SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+                operations.opsForValue().set(USER_IN_CALL_PREFIX + user2Id, user1Id.toString(),
+                        SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+                operations.opsForHash().putAll(ACTIVE_CALL_KEY, Map.of(
+                        user1Id.toString(), callId.toString(),
+                        user2Id.toString(), callId.toString()));
+                return null;
+            }
+        });
+    }
+
+    public Optional<Long> getActiveCallId(Long userId) {
+        Object callId = stringRedisTemplate.opsForHash().get(ACTIVE_CALL_KEY, userId.toString());
+        return callId != null ? Optional.of(Long.parseLong(callId.toString())) : Optional.empty();
+    }
+
+    public void clearActiveCall(Long callId, Long... userIds) {
+        Object[] args = new Object[userIds.length + 1];
+        args[0] = callId.toString();
+        for (int i = 0; i < userIds.length; i++) {
+            args[i + 1] = userIds[i].toString();
+        }
+        stringRedisTemplate.execute(CLEAR_ACTIVE_CALL_SCRIPT, List.of(ACTIVE_CALL_KEY), args);
+    }
+
+    /**
+     * Limpa as chaves de chamada de várias chamadas encerradas em um único pipeline.
+     * Cada item é {callId, user1Id, user2Id}.
+     */
+    public void clearEndedCalls(List<Long[]> calls) {
+        if (calls.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Long[] call : calls) {
+                    operations.execute(CLEAR_ENDED_CALL_SCRIPT,
+                            List.of(ACTIVE_CALL_KEY, USER_IN_CALL_PREFIX + call[1], USER_IN_CALL_PREFIX + call[2]),
+                            call[0].toString(), call[1].toString(), call[2].toString());
+                }
+                return null;
+            }
+        });
     }
 
     public void removeUserFromCall(Long userId) {
@@ -92,38 +730,28 @@ public class RedisMatchmakingService {
         return Optional.empty();
     }
 
-    public void saveUserSession(Long userId, String sessionId) {
-        String key = USER_SESSION_PREFIX + userId;
-        stringRedisTemplate.opsForValue().set(key, sessionId, SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
-    }
-
-    public void removeUserSession(Long userId) {
-        String key = USER_SESSION_PREFIX + userId;
-        stringRedisTemplate.delete(key);
-    }
-
-    public Optional<String> getUserSession(Long userId) {
-        String key = USER_SESSION_PREFIX + userId;
-        String sessionId = stringRedisTemplate.opsForValue().get(key);
-        return Optional.ofNullable(sessionId);
-    }
-
     public void clearQueue() {
-        redisTemplate.delete(QUEUE_KEY);
+        Set<String> queueKeys = stringRedisTemplate.keys(QUEUE_PREFIX + "*");
+        if (queueKeys != null && !queueKeys.isEmpty()) {
+            stringRedisTemplate.delete(queueKeys);
+        }
+        stringRedisTemplate.delete(List.of(SHARDS_KEY, USER_SHARD_KEY));
     }
 
     public void clearAllMatchmakingData() {
-        redisTemplate.delete(QUEUE_KEY);
+        clearQueue();
+        stringRedisTemplate.delete(List.of(USER_PREFERENCE_KEY, USER_INTERESTS_KEY, MATCH_STATS_KEY,
+                RESERVATION_DEADLINES_KEY, USER_RESERVATION_KEY, ACTIVE_CALL_KEY));
+
+        Set<String> reservationKeys = stringRedisTemplate.keys(RESERVATION_PREFIX + "*");
+        if (reservationKeys != null && !reservationKeys.isEmpty()) {
+            stringRedisTemplate.delete(reservationKeys);
+        }
         
         Set<String> inCallKeys = stringRedisTemplate.keys(USER_IN_CALL_PREFIX + "*");
         if (inCallKeys != null && !inCallKeys.isEmpty()) {
             stringRedisTemplate.delete(inCallKeys);
         }
         
-        Set<String> sessionKeys = stringRedisTemplate.keys(USER_SESSION_PREFIX + "*");
-        if (sessionKeys != null && !sessionKeys.isEmpty()) {
-            stringRedisTemplate.delete(sessionKeys);
-        }
-        
     }
 }
@@ -0,0 +1,292 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.MessageTransport.Outbound;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Envia pelo {@link MessageTransport}, fora da thread de quem envia, as mensagens
+ * destinadas a usuários de outras instâncias. Cada {@link Priority} tem sua fila limitada
+ * ({@code websocket.publisher.queue-capacity}) e uma única thread as envia em pipeline a
+ * cada {@code websocket.publisher.flush-interval-ms} ou a cada
+ * {@code websocket.publisher.batch-size} mensagens, usando uma conexão do pool por lote.
+ * Os lotes são montados das filas mais prioritárias para as menos, então digitação e
+ * status são os primeiros a esperar.
+ *
+ * <p>Com a fila cheia, mensagens {@link Priority#CRITICAL} são publicadas na thread de
+ * quem envia, as {@link Priority#LOW} substituem as mais antigas da fila e as
+ * {@link Priority#NORMAL} seguem {@code websocket.publisher.overflow-policy}.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "simple", matchIfMissing = true)
+public class RedisMessagePublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisMessagePublisher.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Importância da mensagem quando a fila enche.
+     */
+    public enum Priority {
+        /** Convites, partidas, fim de chamada e sinalização WebRTC: nunca descartadas. */
+        CRITICAL,
+        /** Chat e erros: seguem a política de transbordo. */
+        NORMAL,
+        /** Digitação e status da fila: a próxima substitui a anterior, descartadas primeiro. */
+        LOW
+    }
+
+    /**
+     * O que fazer com uma mensagem {@link Priority#NORMAL} quando a fila dela está cheia.
+     */
+    public enum OverflowPolicy {
+        /** Descarta a mensagem nova. */
+        DROP_NEWEST,
+        /** Descarta a mensagem mais antiga da fila para abrir espaço. */
+        DROP_OLDEST,
+        /** Publica na própria thread de quem envia, que passa a esperar pelo Redis. */
+        CALLER_RUNS
+    }
+
+    private final MessageTransport messageTransport;
+    private final List<BlockingQueue<Outbound>> queues;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Counter published;
+    private final Counter failed;
+    private final Map<Priority, Counter> dropped = new EnumMap<>(Priority.class);
+    private final Counter callerRuns;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private volatile boolean idle;
+    private Thread thread;
+
+    public RedisMessagePublisher(MessageTransport messageTransport,
+            MeterRegistry meterRegistry,
+            @Value("${websocket.publisher.queue-capacity:10000}") int queueCapacity,
+            @Value("${websocket.publisher.batch-size:256}") int batchSize,
+            @Value("${websocket.publisher.flush-interval-ms:1}") long flushIntervalMs,
+            @Value("${websocket.publisher.overflow-policy:CALLER_RUNS}") OverflowPolicy overflowPolicy) {
+        this.messageTransport = messageTransport;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+
+        List<BlockingQueue<Outbound>> queues = new ArrayList<>();
+        for (Priority priority : Priority.values()) {
+            BlockingQueue<Outbound> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues.add(queue);
+            Gauge.builder("websocket.publisher.queue.size", queue, BlockingQueue::size)
+                    .description("Mensagens aguardando publicação no Redis")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+            if (priority != Priority.CRITICAL) {
+                dropped.put(priority, Counter.builder("websocket.publisher.dropped")
+                        .description("Mensagens descartadas com a fila cheia")
+                        .tag("priority", priority.name())
+                        .register(meterRegistry));
+            }
+        }
+        this.queues = List.copyOf(queues);
+
+        this.published = Counter.builder("websocket.publisher.published")
+                .description("Mensagens publicadas no Redis")
+                .register(meterRegistry);
+        this.failed = Counter.builder("websocket.publisher.failed")
+                .description("Mensagens perdidas por falha do Redis")
+                .register(meterRegistry);
+        this.callerRuns = Counter.builder("websocket.publisher.caller.runs")
+                .description("Mensagens publicadas na thread de quem envia com a fila cheia")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("websocket.publisher.batch.size")
+                .description("Mensagens por pipeline")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("websocket.publisher.flush")
+                .description("Tempo de envio de cada pipeline")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "redis-publisher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Para a thread depois de enviar o que ainda está nas filas.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Enfileira a mensagem para publicação. Só bloqueia com a fila cheia, para mensagens
+     * {@link Priority#CRITICAL} ou {@link Priority#NORMAL} com
+     * {@link OverflowPolicy#CALLER_RUNS}.
+     */
+    public void publish(Long userId, byte[] message, Priority priority) {
+        Outbound outbound = new Outbound(userId, message);
+        BlockingQueue<Outbound> queue = queues.get(priority.ordinal());
+        if (queue.offer(outbound)) {
+            wakeUp();
+            return;
+        }
+
+        OverflowPolicy policy = switch (priority) {
+            case CRITICAL -> OverflowPolicy.CALLER_RUNS;
+            case NORMAL -> overflowPolicy;
+            case LOW -> OverflowPolicy.DROP_OLDEST;
+        };
+        switch (policy) {
+            case DROP_NEWEST -> {
+                dropped.get(priority).increment();
+                logger.warn("Fila de publicação cheia, mensagem descartada - targetUserId={}, priority={}",
+                        userId, priority);
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(outbound)) {
+                    Outbound oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.get(priority).increment();
+                        logger.debug("Fila de publicação cheia, mensagem descartada - targetUserId={}, priority={}",
+                                oldest.userId(), priority);
+                    }
+                }
+                wakeUp();
+            }
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                flush(List.of(outbound));
+            }
+        }
+    }
+
+    private void wakeUp() {
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        List<Outbound> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                if (!fillBatch(batch)) {
+                    continue;
+                }
+                flush(batch);
+            } catch (Exception e) {
+                logger.error("Erro no loop de publicação: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        while (drain(batch) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Espera a primeira mensagem e completa o lote com o que chegar até o fim do intervalo
+     * ou até o tamanho máximo. Devolve {@code false} se nada chegou.
+     */
+    private boolean fillBatch(List<Outbound> batch) {
+        if (drain(batch) == 0) {
+            park(IDLE_PARK_NANOS);
+            if (drain(batch) == 0) {
+                return false;
+            }
+        }
+
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize && running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            park(remaining);
+            drain(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Dorme até o prazo ou até {@link #publish} enfileirar algo. A marca {@code idle} é
+     * ligada antes de olhar as filas de novo para não perder o aviso de quem publica.
+     */
+    private void park(long nanos) {
+        idle = true;
+        try {
+            for (BlockingQueue<Outbound> queue : queues) {
+                if (!queue.isEmpty()) {
+                    return;
+                }
+            }
+            LockSupport.parkNanos(this, nanos);
+        } finally {
+            idle = false;
+        }
+    }
+
+    /**
+     * Move para o lote o que couber, das filas mais prioritárias para as menos.
+     */
+    private int drain(List<Outbound> batch) {
+        int drained = 0;
+        for (BlockingQueue<Outbound> queue : queues) {
+            int room = batchSize - batch.size();
+            if (room <= 0) {
+                break;
+            }
+            drained += queue.drainTo(batch, room);
+        }
+        return drained;
+    }
+
+    private void flush(List<Outbound> batch) {
+        long start = System.nanoTime();
+        try {
+            messageTransport.send(batch);
+            published.increment(batch.size());
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            logger.error("Falha ao publicar {} mensagens no Redis: {}", batch.size(), e.getMessage());
+        } finally {
+            batchSizes.record(batch.size());
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -2,202 +2,107 @@ package com.group_call.call_backend.service;
 
 import com.group_call.call_backend.websocket.handler.MessageHandlerFactory;
 import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageCodec;
+import com.group_call.call_backend.websocket.message.WebSocketMessageFactory;
 import com.group_call.call_backend.websocket.message.WebSocketMessageType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.user.SimpUser;
 import org.springframework.messaging.simp.user.SimpUserRegistry;
-import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-
 import jakarta.annotation.PostConstruct;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Entrega com o broker em memória de cada instância: quem está conectado aqui recebe
+ * direto, os demais pelo {@link MessageTransport} via Redis.
+ */
 @Service
-public class RedisWebSocketBroadcastService {
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "simple", matchIfMissing = true)
+public class RedisWebSocketBroadcastService implements WebSocketBroadcastService {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisWebSocketBroadcastService.class);
-    private static final String WEBSOCKET_BROADCAST_CHANNEL = "websocket:broadcast";
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    private static final long RETRY_DELAY_MS = 100;
-
-    private final RedisTemplate<String, String> stringRedisTemplate;
-    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private static final String STATUS_DESTINATION = "/queue/status";
     private final SimpMessagingTemplate messagingTemplate;
     private final SimpUserRegistry simpUserRegistry;
     private final MessageHandlerFactory messageHandlerFactory;
-    private final ObjectMapper objectMapper;
-    private final TaskScheduler taskScheduler;
+    private final WebSocketMessageFactory messageFactory;
+    private final WebSocketMessageCodec messageCodec;
+    private final RedisMessagePublisher redisMessagePublisher;
+    private final MessageTransport messageTransport;
+    private final PendingDeliveryBuffer pendingDeliveryBuffer;
 
     public RedisWebSocketBroadcastService(
-            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
-            RedisMessageListenerContainer redisMessageListenerContainer,
             SimpMessagingTemplate messagingTemplate,
             SimpUserRegistry simpUserRegistry,
-            MessageHandlerFactory messageHandlerFactory) {
-        this.stringRedisTemplate = stringRedisTemplate;
-        this.redisMessageListenerContainer = redisMessageListenerContainer;
+            MessageHandlerFactory messageHandlerFactory,
+            WebSocketMessageFactory messageFactory,
+            WebSocketMessageCodec messageCodec,
+            RedisMessagePublisher redisMessagePublisher,
+            MessageTransport messageTransport,
+            PendingDeliveryBuffer pendingDeliveryBuffer) {
         this.messagingTemplate = messagingTemplate;
         this.simpUserRegistry = simpUserRegistry;
         this.messageHandlerFactory = messageHandlerFactory;
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        
-        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(5);
-        scheduler.setThreadNamePrefix("websocket-retry-");
-        scheduler.initialize();
-        this.taskScheduler = scheduler;
+        this.messageFactory = messageFactory;
+        this.messageCodec = messageCodec;
+        this.redisMessagePublisher = redisMessagePublisher;
+        this.messageTransport = messageTransport;
+        this.pendingDeliveryBuffer = pendingDeliveryBuffer;
     }
 
     @PostConstruct
     public void init() {
-        String currentServerId = getServerIdentifier();
-        ChannelTopic topic = new ChannelTopic(WEBSOCKET_BROADCAST_CHANNEL);
-        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
-                try {
-                    String payload = new String(message.getBody());
-                    WebSocketMessage wsMessage = objectMapper.readValue(payload, WebSocketMessage.class);
-
-                    SimpUser simpUser = simpUserRegistry.getUser(wsMessage.getTargetUserId().toString());
-                    if (simpUser != null) {
-                        messageHandlerFactory.processMessage(wsMessage, messagingTemplate);
-                    } else if (currentServerId.equals(wsMessage.getServerId())) {
-                        scheduleRetry(wsMessage, MAX_RETRY_ATTEMPTS);
-                    }
-                } catch (Exception e) {
-                    logger.error("Erro ao processar mensagem Redis: {}", e.getMessage());
-                }
-        }, topic);
-    }
-    
-    private String getServerIdentifier() {
-        String flyMachineId = System.getenv("FLY_MACHINE_ID");
-        if (flyMachineId != null && !flyMachineId.isEmpty()) {
-            return flyMachineId;
-        }
-        
-        try {
-            return java.net.InetAddress.getLocalHost().getHostName();
-        } catch (Exception e) {
-            return "unknown";
-        }
+        messageTransport.start(this::deliverLocally);
     }
-    
-    private void scheduleRetry(WebSocketMessage message, int attemptsRemaining) {
-        if (attemptsRemaining <= 0) {
-            logger.warn("Mensagem descartada após {} tentativas - messageId={}, targetUserId={}", 
-                       MAX_RETRY_ATTEMPTS, message.getMessageId(), message.getTargetUserId());
-            return;
+
+    /**
+     * Entrega a mensagem recebida de outra instância se o destinatário está conectado
+     * aqui.
+     */
+    private boolean deliverLocally(WebSocketMessage message) {
+        SimpUser simpUser = simpUserRegistry.getUser(message.getTargetUserName());
+        if (simpUser == null) {
+            return false;
         }
-        
-        taskScheduler.schedule(() -> {
-            SimpUser simpUser = simpUserRegistry.getUser(message.getTargetUserId().toString());
-            if (simpUser != null) {
-                messageHandlerFactory.processMessage(message, messagingTemplate);
-            } else {
-                scheduleRetry(message, attemptsRemaining - 1);
-            }
-        }, java.time.Instant.now().plusMillis(RETRY_DELAY_MS));
+        messageHandlerFactory.processMessage(message, messagingTemplate);
+        return true;
     }
 
-    public void broadcastChatMessage(Long targetUserId, Map<String, Object> payload) {
-        WebSocketMessage message = new WebSocketMessage(
-            WebSocketMessageType.CHAT_MESSAGE, 
-            targetUserId, 
-            "/queue/chat", 
-            payload
-        );
-        publishToRedis(message);
-    }
-    
-    public void broadcastTypingIndicator(Long targetUserId, Map<String, Object> payload) {
-        WebSocketMessage message = new WebSocketMessage(
-            WebSocketMessageType.TYPING_INDICATOR, 
-            targetUserId, 
-            "/queue/typing", 
-            payload
-        );
-        publishToRedis(message);
-    }
-    
-    public void broadcastWebRTCSignal(Long targetUserId, Map<String, Object> payload) {
-        WebSocketMessage message = new WebSocketMessage(
-            WebSocketMessageType.WEBRTC_SIGNAL, 
-            targetUserId, 
-            "/queue/webrtc-signal", 
-            payload
-        );
-        publishToRedis(message);
+    @Override
+    public void flushPending(Long userId) {
+        deliverPending(pendingDeliveryBuffer.drain(userId));
     }
-    
-    public void broadcastMatchFound(Long targetUserId, Map<String, Object> payload) {
-        WebSocketMessage message = new WebSocketMessage(
-            WebSocketMessageType.MATCH_FOUND, 
-            targetUserId, 
-            "/queue/match-found", 
-            payload
-        );
-        publishToRedis(message);
-    }
-    
-    public void broadcastCallEnded(Long targetUserId, Map<String, Object> payload) {
-        WebSocketMessage message = new WebSocketMessage(
-            WebSocketMessageType.CALL_ENDED, 
-            targetUserId, 
-            "/queue/call-ended", 
-            payload
-        );
-        publishToRedis(message);
-    }
-    
-    public void broadcastError(Long targetUserId, Map<String, Object> payload) {
-        WebSocketMessage message = new WebSocketMessage(
-            WebSocketMessageType.ERROR, 
-            targetUserId, 
-            "/queue/error", 
-            payload
-        );
-        publishToRedis(message);
+
+    @Override
+    public void flushPending(Long userId, String destination) {
+        deliverPending(pendingDeliveryBuffer.drain(userId, destination));
     }
-    
-    public void broadcastToUser(Long userId, String destination, Object payload) {
-        WebSocketMessageType type = determineMessageType(destination);
-        
-        @SuppressWarnings("unchecked")
-        Map<String, Object> payloadMap = (payload instanceof Map) 
-            ? (Map<String, Object>) payload 
-            : Map.of("data", payload);
-            
-        WebSocketMessage message = new WebSocketMessage(type, userId, destination, payloadMap);
-        publishToRedis(message);
+
+    private void deliverPending(List<WebSocketMessage> messages) {
+        for (WebSocketMessage message : messages) {
+            if (!deliverLocally(message)) {
+                pendingDeliveryBuffer.add(message);
+            }
+        }
     }
-    
-    private WebSocketMessageType determineMessageType(String destination) {
-        if (destination.contains("chat")) return WebSocketMessageType.CHAT_MESSAGE;
-        if (destination.contains("typing")) return WebSocketMessageType.TYPING_INDICATOR;
-        if (destination.contains("webrtc")) return WebSocketMessageType.WEBRTC_SIGNAL;
-        if (destination.contains("match")) return WebSocketMessageType.MATCH_FOUND;
-        if (destination.contains("call-ended")) return WebSocketMessageType.CALL_ENDED;
-        if (destination.contains("error")) return WebSocketMessageType.ERROR;
-        return WebSocketMessageType.CHAT_MESSAGE;
+
+    @Override
+    public void broadcast(WebSocketMessageType messageType, Long targetUserId, String destination,
+            Map<String, Object> payload) {
+        publishToRedis(messageFactory.create(messageType, targetUserId, destination, payload));
     }
-    
+
     private void publishToRedis(WebSocketMessage message) {
         try {
-            SimpUser simpUser = simpUserRegistry.getUser(message.getTargetUserId().toString());
-            if (simpUser != null && !simpUser.getSessions().isEmpty()) {
+            SimpUser simpUser = simpUserRegistry.getUser(message.getTargetUserName());
+            if (simpUser != null && simpUser.hasSessions()) {
                 try {
                     messageHandlerFactory.processMessage(message, messagingTemplate);
                     return;
@@ -206,12 +111,26 @@ public class RedisWebSocketBroadcastService {
                 }
             }
             
-            String json = objectMapper.writeValueAsString(message);
-            stringRedisTemplate.convertAndSend(WEBSOCKET_BROADCAST_CHANNEL, json);
+            message.setTimestamp(LocalDateTime.now());
+            redisMessagePublisher.publish(message.getTargetUserId(), messageCodec.encode(message), priorityOf(message));
             
-        } catch (JsonProcessingException e) {
+        } catch (IllegalArgumentException e) {
             logger.error("Mensagem perdida por falha de serialização - targetUserId={}, error={}", 
                         message.getTargetUserId(), e.getMessage());
         }
     }
+
+    private static RedisMessagePublisher.Priority priorityOf(WebSocketMessage message) {
+        if (message.getMessageType() == null) {
+            return RedisMessagePublisher.Priority.NORMAL;
+        }
+        if (STATUS_DESTINATION.equals(message.getDestination())) {
+            return RedisMessagePublisher.Priority.LOW;
+        }
+        return switch (message.getMessageType()) {
+            case MATCH_PROPOSED, MATCH_FOUND, CALL_ENDED, WEBRTC_SIGNAL -> RedisMessagePublisher.Priority.CRITICAL;
+            case TYPING_INDICATOR -> RedisMessagePublisher.Priority.LOW;
+            case CHAT_MESSAGE, ERROR -> RedisMessagePublisher.Priority.NORMAL;
+        };
+    }
 }
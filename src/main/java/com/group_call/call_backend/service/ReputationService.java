@@ -0,0 +1,187 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.repository.CallRatingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mantém a reputação de cada usuário (média das avaliações recebidas) de forma
+ * incremental nos hashes Redis {@value #SUM_KEY} e {@value #COUNT_KEY}. A fila de
+ * pareamento lê os dois campos junto com a janela, então o matcher obtém a reputação em
+ * O(1) sem nenhuma consulta agregada ao banco.
+ * <p>
+ * Enquanto a carga inicial roda ({@value #BACKFILL_KEY} igual a {@code running}), os
+ * incrementos vão para os hashes pendentes {@value #PENDING_SUM_KEY} e
+ * {@value #PENDING_COUNT_KEY}; a carga grava os totais, soma os pendentes e só então marca
+ * {@code done}, na mesma operação. Assim nenhum incremento é apagado pela carga nem
+ * perdido durante ela.
+ */
+@Service
+public class ReputationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReputationService.class);
+
+    public static final String SUM_KEY = "reputation:sum";
+    public static final String COUNT_KEY = "reputation:count";
+    private static final String BACKFILL_KEY = "reputation:backfilled";
+    private static final String PENDING_SUM_KEY = "reputation:pending_sum";
+    private static final String PENDING_COUNT_KEY = "reputation:pending_count";
+    private static final String BACKFILL_RUNNING = "running";
+    /** Libera uma nova carga se a instância que a fazia parou no meio. */
+    private static final Duration BACKFILL_TIMEOUT = Duration.ofMinutes(10);
+
+    /**
+     * KEYS: somas, quantidades, marca da carga, somas pendentes, quantidades pendentes.
+     * ARGV: userId, delta da soma, delta da quantidade.
+     * Retorna vazio se o incremento ficou pendente da carga em andamento e nil se a carga
+     * ainda não começou (ela lerá a avaliação do banco).
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            local state = redis.call('GET', KEYS[3])
+            if state == 'running' then
+                redis.call('HINCRBY', KEYS[4], ARGV[1], ARGV[2])
+                redis.call('HINCRBY', KEYS[5], ARGV[1], ARGV[3])
+                return {}
+            end
+            if state ~= 'done' then
+                return nil
+            end
+            local sum = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+            local count = redis.call('HINCRBY', KEYS[2], ARGV[1], ARGV[3])
+            if count <= 0 then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+                redis.call('HDEL', KEYS[2], ARGV[1])
+                return {0, 0}
+            end
+            return {sum, count}
+            """, List.class);
+
+    /**
+     * KEYS: somas, quantidades, marca da carga, somas pendentes, quantidades pendentes.
+     * ARGV: pares userId, soma, quantidade.
+     * Grava os totais, soma os incrementos pendentes e libera os próximos na mesma operação.
+     */
+    private static final RedisScript<Long> BACKFILL_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #ARGV, 3 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+                redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 2])
+            end
+            local sums = redis.call('HGETALL', KEYS[4])
+            for i = 1, #sums, 2 do
+                redis.call('HINCRBY', KEYS[1], sums[i], sums[i + 1])
+            end
+            local counts = redis.call('HGETALL', KEYS[5])
+            for i = 1, #counts, 2 do
+                if redis.call('HINCRBY', KEYS[2], counts[i], counts[i + 1]) <= 0 then
+                    redis.call('HDEL', KEYS[1], counts[i])
+                    redis.call('HDEL', KEYS[2], counts[i])
+                end
+            end
+            redis.call('DEL', KEYS[4], KEYS[5])
+            redis.call('SET', KEYS[3], 'done')
+            return #ARGV / 3
+            """, Long.class);
+
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final CallRatingRepository callRatingRepository;
+
+    public ReputationService(@Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            CallRatingRepository callRatingRepository) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.callRatingRepository = callRatingRepository;
+    }
+
+    public void addRating(Long userId, int rating) {
+        update(userId, rating, 1);
+    }
+
+    public void changeRating(Long userId, int oldRating, int newRating) {
+        if (oldRating != newRating) {
+            update(userId, newRating - oldRating, 0);
+        }
+    }
+
+    public void removeRating(Long userId, int rating) {
+        update(userId, -rating, -1);
+    }
+
+    /**
+     * Converte a soma e a quantidade armazenadas no Redis na média correspondente.
+     */
+    public static double average(String sum, String count) {
+        if (sum == null || sum.isEmpty() || count == null || count.isEmpty()) {
+            return Double.NaN;
+        }
+        long total = Long.parseLong(count);
+        return total > 0 ? (double) Long.parseLong(sum) / total : Double.NaN;
+    }
+
+    /**
+     * Carrega as avaliações já existentes no banco uma única vez por ambiente; as
+     * instâncias seguintes encontram a marca no Redis e não repetem a agregação.
+     * Avaliações feitas durante a carga ficam nos hashes pendentes, esvaziados logo antes
+     * da consulta, e são somadas aos totais ao final.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(BACKFILL_KEY, BACKFILL_RUNNING, BACKFILL_TIMEOUT))) {
+                return;
+            }
+            // Restos de uma carga interrompida já estão no banco
+            stringRedisTemplate.delete(List.of(PENDING_SUM_KEY, PENDING_COUNT_KEY));
+
+            List<Object[]> rows = new ArrayList<>(callRatingRepository.sumRatingsReceivedAsUser1());
+            rows.addAll(callRatingRepository.sumRatingsReceivedAsUser2());
+
+            Map<Long, long[]> totals = new HashMap<>();
+            for (Object[] row : rows) {
+                long[] total = totals.computeIfAbsent((Long) row[0], key -> new long[2]);
+                total[0] += ((Number) row[1]).longValue();
+                total[1] += ((Number) row[2]).longValue();
+            }
+
+            List<String> args = new ArrayList<>(totals.size() * 3);
+            totals.forEach((userId, total) -> {
+                args.add(userId.toString());
+                args.add(Long.toString(total[0]));
+                args.add(Long.toString(total[1]));
+            });
+            stringRedisTemplate.execute(BACKFILL_SCRIPT,
+                    List.of(SUM_KEY, COUNT_KEY, BACKFILL_KEY, PENDING_SUM_KEY, PENDING_COUNT_KEY), args.toArray());
+            logger.info("Reputação carregada para {} usuários", totals.size());
+        } catch (Exception e) {
+            stringRedisTemplate.delete(List.of(BACKFILL_KEY, PENDING_SUM_KEY, PENDING_COUNT_KEY));
+            logger.error("Erro ao carregar reputação dos usuários: {}", e.getMessage());
+        }
+    }
+
+    private void update(Long userId, long sumDelta, long countDelta) {
+        try {
+            List<?> result = stringRedisTemplate.execute(UPDATE_SCRIPT,
+                    List.of(SUM_KEY, COUNT_KEY, BACKFILL_KEY, PENDING_SUM_KEY, PENDING_COUNT_KEY),
+                    userId.toString(), Long.toString(sumDelta), Long.toString(countDelta));
+            if (result == null) {
+                logger.warn("Reputação do usuário {} não atualizada: carga inicial ainda não executada", userId);
+            } else if (result.isEmpty()) {
+                logger.debug("Reputação do usuário {} pendente até o fim da carga inicial", userId);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao atualizar reputação do usuário {}: {}", userId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encerra chamadas que ficaram ACTIVE sem nenhum participante conectado, por exemplo
+ * quando a instância dos dois caiu antes do disconnect. Percorre as chamadas ativas mais
+ * antigas que {@code calls.reaper.grace-ms} em lotes de {@code calls.reaper.batch-size},
+ * confere a presença dos participantes em pipeline e encerra as órfãs com um único UPDATE por
+ * lote. Várias instâncias podem rodar ao mesmo tempo: o UPDATE só afeta chamadas ainda
+ * ativas.
+ */
+@Component
+public class StaleCallReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaleCallReaper.class);
+
+    private final CallRepository callRepository;
+    private final RedisMatchmakingService redisMatchmaking;
+    private final CallParticipantCache callParticipantCache;
+    private final PresenceService presenceService;
+    private final Counter reaped;
+    private final long graceMs;
+    private final int batchSize;
+
+    public StaleCallReaper(CallRepository callRepository,
+            RedisMatchmakingService redisMatchmaking,
+            CallParticipantCache callParticipantCache,
+            PresenceService presenceService,
+            MeterRegistry meterRegistry,
+            @Value("${calls.reaper.grace-ms:60000}") long graceMs,
+            @Value("${calls.reaper.batch-size:500}") int batchSize) {
+        this.callRepository = callRepository;
+        this.redisMatchmaking = redisMatchmaking;
+        this.callParticipantCache = callParticipantCache;
+        this.presenceService = presenceService;
+        this.graceMs = graceMs;
+        this.batchSize = batchSize;
+        this.reaped = Counter.builder("calls.reaped")
+                .description("Chamadas ativas encerradas por não terem participantes conectados")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${calls.reaper.interval-ms:60000}")
+    public void reap() {
+        try {
+            int count = reapStaleCalls(LocalDateTime.now());
+            if (count > 0) {
+                logger.info("Chamadas órfãs encerradas: {}", count);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao encerrar chamadas órfãs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Encerra as chamadas órfãs iniciadas antes de {@code now} menos a carência e
+     * retorna quantas foram encerradas por esta instância.
+     */
+    public int reapStaleCalls(LocalDateTime now) {
+        LocalDateTime startedBefore = now.minusNanos(graceMs * 1_000_000);
+        int total = 0;
+        long afterId = 0;
+
+        List<Object[]> rows;
+        do {
+            rows = callRepository.findParticipantsByStatusStartedBefore(CallEntity.CallStatus.ACTIVE,
+                    startedBefore, afterId, PageRequest.of(0, batchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            Set<Long> participants = new HashSet<>();
+            for (Object[] row : rows) {
+                participants.add((Long) row[1]);
+                participants.add((Long) row[2]);
+            }
+            Set<Long> online = presenceService.getOnlineUsers(participants);
+
+            List<Long> staleIds = new ArrayList<>();
+            List<Long[]> staleCalls = new ArrayList<>();
+            for (Object[] row : rows) {
+                Long callId = (Long) row[0];
+                Long user1Id = (Long) row[1];
+                Long user2Id = (Long) row[2];
+                if (!online.contains(user1Id) && !online.contains(user2Id)) {
+                    staleIds.add(callId);
+                    staleCalls.add(new Long[]{callId, user1Id, user2Id});
+                }
+            }
+
+            if (!staleIds.isEmpty()) {
+                int count = callRepository.completeActiveCalls(staleIds, now);
+                redisMatchmaking.clearEndedCalls(staleCalls);
+                callParticipantCache.evictAll(staleIds);
+                reaped.increment(count);
+                total += count;
+            }
+
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        } while (rows.size() == batchSize);
+
+        return total;
+    }
+}
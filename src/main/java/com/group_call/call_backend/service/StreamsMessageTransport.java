@@ -0,0 +1,375 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageCodec;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transporte por Redis Streams com entrega confiável. Cada instância lê o próprio stream
+ * {@value #STREAM_PREFIX}{@code <nodeId>} com um consumer group, em lotes de
+ * {@code websocket.streams.batch-size}, e só confirma (XACK) o que entregou ou repassou.
+ * Mensagens para um usuário que ainda não apareceu aqui ficam pendentes e são relidas a
+ * cada {@code websocket.streams.pending-check-ms}, uma página por vez a partir da última
+ * lida, para que pendentes antigas não prendam as seguintes; passado
+ * {@code websocket.streams.pending-ttl-ms}, ou se o usuário reconectou em outra instância,
+ * elas seguem para a instância atual ou para a caixa {@value #MAILBOX_PREFIX}{@code <userId>},
+ * reproduzida no stream de quem conectar o usuário. Os streams são aparados em
+ * {@code websocket.streams.max-length} entradas.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "simple", matchIfMissing = true)
+@ConditionalOnProperty(name = "websocket.transport", havingValue = "streams")
+public class StreamsMessageTransport implements MessageTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamsMessageTransport.class);
+    static final String STREAM_PREFIX = "websocket:stream:";
+    static final String MAILBOX_PREFIX = "websocket:mailbox:";
+    static final String ALIVE_PREFIX = "websocket:node_alive:";
+    private static final String GROUP = "websocket";
+    private static final byte[] USER_FIELD = "u".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MESSAGE_FIELD = "m".getBytes(StandardCharsets.UTF_8);
+
+    static final long ROUTED = 1;
+    static final long PARKED = 0;
+    static final long KEPT = 2;
+
+    /**
+     * Envia ao stream da instância do usuário se ela está viva; senão remove o registro e
+     * guarda na caixa do usuário (aparada e com expiração). Se o registro aponta para
+     * ARGV[9] (a instância que chama) e ARGV[10] é '1', não faz nada. Retorna 1 se
+     * enviou ao stream, 0 se guardou na caixa e 2 se manteve.
+     * KEYS: user_node. ARGV: userId, prefixo dos streams, prefixo de vida, prefixo das
+     * caixas, mensagem, tamanho do stream, tamanho da caixa, expiração da caixa, instância
+     * que chama, manter.
+     */
+    private static final RedisScript<Long> SEND_SCRIPT = new DefaultRedisScript<>("""
+            local node = redis.call('HGET', KEYS[1], ARGV[1])
+            if node then
+                if node == ARGV[9] then
+                    if ARGV[10] == '1' then
+                        return 2
+                    end
+                elseif redis.call('EXISTS', ARGV[3] .. node) == 1 then
+                    redis.call('XADD', ARGV[2] .. node, 'MAXLEN', '~', ARGV[6], '*', 'u', ARGV[1], 'm', ARGV[5])
+                    return 1
+                else
+                    redis.call('HDEL', KEYS[1], ARGV[1])
+                end
+            end
+            local mailbox = ARGV[4] .. ARGV[1]
+            redis.call('XADD', mailbox, 'MAXLEN', '~', ARGV[7], '*', 'u', ARGV[1], 'm', ARGV[5])
+            redis.call('PEXPIRE', mailbox, ARGV[8])
+            return 0
+            """, Long.class);
+
+    /**
+     * Move a caixa do usuário para o stream desta instância e a apaga. Retorna quantas
+     * mensagens foram movidas.
+     * KEYS: caixa, stream. ARGV: tamanho do stream.
+     */
+    private static final RedisScript<Long> REPLAY_MAILBOX_SCRIPT = new DefaultRedisScript<>("""
+            local entries = redis.call('XRANGE', KEYS[1], '-', '+')
+            for _, entry in ipairs(entries) do
+                local fields = entry[2]
+                redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[1], '*', fields[1], fields[2], fields[3], fields[4])
+            end
+            redis.call('DEL', KEYS[1])
+            return #entries
+            """, Long.class);
+
+    private static final RedisSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final UserNodeRegistry userNodeRegistry;
+    private final WebSocketMessageCodec messageCodec;
+    private final String streamKey;
+    private final long maxLength;
+    private final int batchSize;
+    private final long blockMs;
+    private final long pendingCheckMs;
+    private final long pendingTtlMs;
+    private final long mailboxMaxLength;
+    private final long mailboxTtlMs;
+    private final long nodeTtlMs;
+
+    private volatile boolean running;
+    private Thread thread;
+    private String pendingCursor = "0";
+
+    public StreamsMessageTransport(
+            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            UserNodeRegistry userNodeRegistry,
+            WebSocketMessageCodec messageCodec,
+            @Value("${websocket.streams.max-length:10000}") long maxLength,
+            @Value("${websocket.streams.batch-size:100}") int batchSize,
+            @Value("${websocket.streams.block-ms:500}") long blockMs,
+            @Value("${websocket.streams.pending-check-ms:200}") long pendingCheckMs,
+            @Value("${websocket.streams.pending-ttl-ms:5000}") long pendingTtlMs,
+            @Value("${websocket.streams.mailbox.max-length:100}") long mailboxMaxLength,
+            @Value("${websocket.streams.mailbox.ttl-ms:60000}") long mailboxTtlMs,
+            @Value("${websocket.streams.node-ttl-ms:15000}") long nodeTtlMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.userNodeRegistry = userNodeRegistry;
+        this.messageCodec = messageCodec;
+        this.streamKey = STREAM_PREFIX + userNodeRegistry.getNodeId();
+        this.maxLength = maxLength;
+        this.batchSize = batchSize;
+        this.blockMs = blockMs;
+        this.pendingCheckMs = pendingCheckMs;
+        this.pendingTtlMs = pendingTtlMs;
+        this.mailboxMaxLength = mailboxMaxLength;
+        this.mailboxTtlMs = mailboxTtlMs;
+        this.nodeTtlMs = nodeTtlMs;
+    }
+
+    @Override
+    public void start(LocalDelivery delivery) {
+        running = true;
+        thread = new Thread(() -> run(delivery), "redis-stream-reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join(blockMs + TimeUnit.SECONDS.toMillis(1));
+        }
+        stringRedisTemplate.delete(ALIVE_PREFIX + userNodeRegistry.getNodeId());
+    }
+
+    @Override
+    public void send(List<Outbound> messages) {
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Outbound outbound : messages) {
+                    operations.execute(SEND_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                            List.of(UserNodeRegistry.USER_NODE_KEY), sendArgs(outbound.userId(), outbound.message(), "", false));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Envia uma mensagem que chegou aqui mas não pôde ser entregue. Retorna
+     * {@link #ROUTED}, {@link #PARKED} ou, com {@code keep} e o usuário ainda registrado
+     * nesta instância, {@link #KEPT}.
+     */
+    long reroute(Long userId, byte[] message, boolean keep) {
+        Long result = stringRedisTemplate.execute(SEND_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                List.of(UserNodeRegistry.USER_NODE_KEY), sendArgs(userId, message, userNodeRegistry.getNodeId(), keep));
+        return result != null ? result : PARKED;
+    }
+
+    private Object[] sendArgs(Long userId, byte[] message, String self, boolean keep) {
+        return new Object[]{bytes(userId.toString()), bytes(STREAM_PREFIX), bytes(ALIVE_PREFIX), bytes(MAILBOX_PREFIX),
+                message, bytes(Long.toString(maxLength)), bytes(Long.toString(mailboxMaxLength)),
+                bytes(Long.toString(mailboxTtlMs)), bytes(self), bytes(keep ? "1" : "0")};
+    }
+
+    /**
+     * Traz para o stream desta instância o que ficou guardado enquanto o usuário estava
+     * desconectado.
+     */
+    @Override
+    public void userConnected(Long userId) {
+        Long replayed = stringRedisTemplate.execute(REPLAY_MAILBOX_SCRIPT,
+                List.of(MAILBOX_PREFIX + userId, streamKey), Long.toString(maxLength));
+        if (replayed != null && replayed > 0) {
+            logger.info("Reproduzindo {} mensagens guardadas para userId={}", replayed, userId);
+        }
+    }
+
+    /**
+     * Marca esta instância como viva; o registro de usuários de instâncias sem marca é
+     * descartado no envio.
+     */
+    void heartbeat() {
+        stringRedisTemplate.opsForValue().set(ALIVE_PREFIX + userNodeRegistry.getNodeId(), "1",
+                nodeTtlMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(LocalDelivery delivery) {
+        long nextHeartbeat = 0;
+        long nextPendingCheck = 0;
+        boolean groupReady = false;
+
+        while (running) {
+            try {
+                if (!groupReady) {
+                    createGroup();
+                    groupReady = true;
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextHeartbeat) {
+                    heartbeat();
+                    nextHeartbeat = now + nodeTtlMs / 3;
+                }
+                // Pendentes desta instância, inclusive os de antes de um reinício
+                if (now >= nextPendingCheck) {
+                    checkPending(delivery, now);
+                    nextPendingCheck = now + pendingCheckMs;
+                }
+
+                process(delivery, read(ReadOffset.lastConsumed(), true), System.currentTimeMillis());
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                groupReady = false;
+                logger.error("Erro ao ler stream {}: {}", streamKey, e.getMessage());
+                try {
+                    Thread.sleep(blockMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void createGroup() {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(bytes(streamKey), GROUP, ReadOffset.latest(), true));
+        } catch (Exception e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Relê uma página de pendentes a partir de onde a anterior parou e volta ao início
+     * quando chega ao fim da lista.
+     */
+    private void checkPending(LocalDelivery delivery, long now) {
+        List<ByteRecord> pending = read(ReadOffset.from(pendingCursor), false);
+        pendingCursor = pending.size() < batchSize ? "0" : pending.get(pending.size() - 1).getId().getValue();
+        process(delivery, pending, now);
+    }
+
+    private List<ByteRecord> read(ReadOffset offset, boolean block) {
+        StreamReadOptions options = StreamReadOptions.empty().count(batchSize);
+        if (block) {
+            options = options.block(Duration.ofMillis(blockMs));
+        }
+        StreamReadOptions readOptions = options;
+        List<ByteRecord> records = stringRedisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xReadGroup(Consumer.from(GROUP, userNodeRegistry.getNodeId()), readOptions,
+                        StreamOffset.create(bytes(streamKey), offset)));
+        return records != null ? records : List.of();
+    }
+
+    /**
+     * Entrega ou repassa um lote e confirma tudo que saiu desta instância com um único
+     * XACK. As que ainda podem esperar só são repassadas se o registro do usuário, lido
+     * com um único HMGET para o lote, já aponta para outra instância.
+     */
+    private void process(LocalDelivery delivery, List<ByteRecord> records, long now) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        List<RecordId> done = new ArrayList<>(records.size());
+        List<ByteRecord> waiting = new ArrayList<>();
+        List<Long> waitingUsers = new ArrayList<>();
+        for (ByteRecord record : records) {
+            byte[] userId = field(record.getValue(), USER_FIELD);
+            byte[] body = field(record.getValue(), MESSAGE_FIELD);
+            if (userId == null || body == null) {
+                // Entrada já removida pelo corte do stream
+                done.add(record.getId());
+                continue;
+            }
+
+            try {
+                WebSocketMessage message = messageCodec.decode(body);
+                if (delivery.deliver(message)) {
+                    done.add(record.getId());
+                    continue;
+                }
+
+                Long targetUserId = Long.parseLong(new String(userId, StandardCharsets.UTF_8));
+                if (now - record.getId().getTimestamp() < pendingTtlMs) {
+                    waiting.add(record);
+                    waitingUsers.add(targetUserId);
+                } else {
+                    reroute(targetUserId, body, false);
+                    done.add(record.getId());
+                }
+            } catch (Exception e) {
+                logger.error("Mensagem do stream descartada - id={}: {}", record.getId(), e.getMessage());
+                done.add(record.getId());
+            }
+        }
+
+        if (!waiting.isEmpty()) {
+            List<String> nodes = userNodeRegistry.getNodes(waitingUsers);
+            for (int i = 0; i < waiting.size(); i++) {
+                if (userNodeRegistry.getNodeId().equals(nodes.get(i))) {
+                    continue;
+                }
+                ByteRecord record = waiting.get(i);
+                try {
+                    if (reroute(waitingUsers.get(i), field(record.getValue(), MESSAGE_FIELD), true) != KEPT) {
+                        done.add(record.getId());
+                    }
+                } catch (Exception e) {
+                    logger.error("Falha ao repassar mensagem do stream - id={}: {}", record.getId(), e.getMessage());
+                }
+            }
+        }
+
+        if (!done.isEmpty()) {
+            stringRedisTemplate.execute((RedisCallback<Long>) connection -> connection.streamCommands()
+                    .xAck(bytes(streamKey), GROUP, done.toArray(RecordId[]::new)));
+        }
+    }
+
+    private static byte[] field(Map<byte[], byte[]> fields, byte[] name) {
+        for (Map.Entry<byte[], byte[]> entry : fields.entrySet()) {
+            if (Arrays.equals(entry.getKey(), name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.group_call.call_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filtra os indicadores de digitação, que os clientes enviam a cada tecla, antes de
+ * qualquer publicação; quem chama já conferiu que o remetente participa da chamada. Por
+ * chamada e remetente só passam as mudanças de estado e, enquanto ele continua
+ * digitando, no máximo uma renovação a cada {@code websocket.typing.refresh-ms}. Quem
+ * para sem avisar é esquecido após {@code websocket.typing.expire-ms}.
+ */
+@Component
+public class TypingIndicatorCoalescer {
+
+    private record Key(Long callId, Long senderId) {
+    }
+
+    /** Remetentes digitando e quando o último indicador foi encaminhado. */
+    private final Map<Key, Long> typing = new ConcurrentHashMap<>();
+    private final long refreshMs;
+    private final long expireMs;
+    private final Counter forwarded;
+    private final Counter coalesced;
+
+    public TypingIndicatorCoalescer(MeterRegistry meterRegistry,
+            @Value("${websocket.typing.refresh-ms:3000}") long refreshMs,
+            @Value("${websocket.typing.expire-ms:10000}") long expireMs) {
+        this.refreshMs = refreshMs;
+        this.expireMs = expireMs;
+        this.forwarded = Counter.builder("websocket.typing.forwarded")
+                .description("Indicadores de digitação encaminhados ao destinatário")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("websocket.typing.coalesced")
+                .description("Indicadores de digitação redundantes descartados")
+                .register(meterRegistry);
+
+        Gauge.builder("websocket.typing.active", typing, Map::size)
+                .description("Remetentes digitando nesta instância")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indica se o frame muda o que o destinatário vê e deve ser encaminhado.
+     */
+    public boolean shouldForward(Long callId, Long senderId, boolean isTyping) {
+        return shouldForward(callId, senderId, isTyping, System.currentTimeMillis());
+    }
+
+    boolean shouldForward(Long callId, Long senderId, boolean isTyping, long now) {
+        Key key = new Key(callId, senderId);
+        boolean forward;
+        if (isTyping) {
+            boolean[] renewed = new boolean[1];
+            typing.compute(key, (k, last) -> {
+                if (last == null || now - last >= refreshMs) {
+                    renewed[0] = true;
+                    return now;
+                }
+                return last;
+            });
+            forward = renewed[0];
+        } else {
+            // Sem registro o destinatário já vê o remetente parado
+            forward = typing.remove(key) != null;
+        }
+
+        (forward ? forwarded : coalesced).increment();
+        return forward;
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.typing.expire-ms:10000}")
+    public void sweep() {
+        sweep(System.currentTimeMillis());
+    }
+
+    void sweep(long now) {
+        typing.values().removeIf(last -> now - last >= expireMs);
+    }
+}
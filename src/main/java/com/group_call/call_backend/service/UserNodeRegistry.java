@@ -0,0 +1,105 @@
+package com.group_call.call_backend.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Registro distribuído de qual instância atende cada usuário conectado, gravado no
+ * hash {@value #USER_NODE_KEY} na conexão e na desconexão. O {@link MessageTransport}
+ * usa o registro para enviar cada mensagem só à instância do destinatário. Só existe com
+ * o broker em memória; com o relay o próprio broker encontra a sessão.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker", havingValue = "simple", matchIfMissing = true)
+public class UserNodeRegistry {
+
+    static final String USER_NODE_KEY = "websocket:user_node";
+
+    /**
+     * Remove o registro do usuário apenas se ainda aponta para esta instância; se ele já
+     * reconectou em outra, o registro novo é mantido.
+     * KEYS: user_node. ARGV: userId, nodeId.
+     */
+    private static final RedisScript<Long> UNREGISTER_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then
+                return redis.call('HDEL', KEYS[1], ARGV[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final RedisTemplate<String, String> stringRedisTemplate;
+    private final String nodeId;
+
+    public UserNodeRegistry(
+            @Qualifier("customStringRedisTemplate") RedisTemplate<String, String> stringRedisTemplate,
+            @Value("${websocket.node-id:}") String nodeId) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nodeId = resolveNodeId(nodeId);
+    }
+
+    /**
+     * Identificador desta instância: {@code websocket.node-id} se configurado, senão a
+     * máquina do Fly.io ou, fora dele, hostname e PID, para que várias instâncias no mesmo
+     * host não compartilhem o canal.
+     */
+    public static String resolveNodeId(String configured) {
+        return configured.isBlank() ? defaultNodeId() : configured;
+    }
+
+    private static String defaultNodeId() {
+        String flyMachineId = System.getenv("FLY_MACHINE_ID");
+        if (flyMachineId != null && !flyMachineId.isEmpty()) {
+            return flyMachineId;
+        }
+
+        try {
+            return java.net.InetAddress.getLocalHost().getHostName() + "-" + ProcessHandle.current().pid();
+        } catch (Exception e) {
+            return "unknown-" + ProcessHandle.current().pid();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void register(Long userId) {
+        stringRedisTemplate.opsForHash().put(USER_NODE_KEY, userId.toString(), nodeId);
+    }
+
+    public void unregister(Long userId) {
+        stringRedisTemplate.execute(UNREGISTER_SCRIPT, List.of(USER_NODE_KEY), userId.toString(), nodeId);
+    }
+
+    public Optional<String> getNode(Long userId) {
+        Object node = stringRedisTemplate.opsForHash().get(USER_NODE_KEY, userId.toString());
+        return Optional.ofNullable(node).map(Object::toString);
+    }
+
+    /**
+     * Instâncias de vários usuários com um único HMGET, na ordem recebida; {@code null}
+     * para quem não está registrado.
+     */
+    public List<String> getNodes(List<Long> userIds) {
+        List<Object> fields = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            fields.add(userId.toString());
+        }
+        List<Object> nodes = stringRedisTemplate.opsForHash().multiGet(USER_NODE_KEY, fields);
+        List<String> result = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            Object node = nodes != null && i < nodes.size() ? nodes.get(i) : null;
+            result.add(node != null ? node.toString() : null);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+
+import java.util.Map;
+
+/**
+ * Envio de mensagens a um usuário, esteja ele conectado nesta instância ou em outra.
+ * {@code websocket.broker} escolhe a implementação: {@code simple} usa o broker em
+ * memória e o Redis entre instâncias ({@link RedisWebSocketBroadcastService});
+ * {@code relay} deixa a entrega com um broker STOMP externo
+ * ({@link BrokerRelayBroadcastService}).
+ */
+public interface WebSocketBroadcastService {
+
+    void broadcast(WebSocketMessageType messageType, Long targetUserId, String destination, Map<String, Object> payload);
+
+    default void broadcastChatMessage(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.CHAT_MESSAGE, targetUserId, "/queue/chat", payload);
+    }
+
+    default void broadcastTypingIndicator(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.TYPING_INDICATOR, targetUserId, "/queue/typing", payload);
+    }
+
+    default void broadcastWebRTCSignal(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.WEBRTC_SIGNAL, targetUserId, "/queue/webrtc-signal", payload);
+    }
+
+    default void broadcastMatchProposed(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.MATCH_PROPOSED, targetUserId, "/queue/match-proposed", payload);
+    }
+
+    default void broadcastMatchFound(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.MATCH_FOUND, targetUserId, "/queue/match-found", payload);
+    }
+
+    default void broadcastCallEnded(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.CALL_ENDED, targetUserId, "/queue/call-ended", payload);
+    }
+
+    default void broadcastError(Long targetUserId, Map<String, Object> payload) {
+        broadcast(WebSocketMessageType.ERROR, targetUserId, "/queue/error", payload);
+    }
+
+    default void broadcastToUser(Long userId, String destination, Object payload) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> payloadMap = (payload instanceof Map)
+            ? (Map<String, Object>) payload
+            : Map.of("data", payload);
+
+        broadcast(WebSocketMessageType.fromDestination(destination), userId, destination, payloadMap);
+    }
+
+    /**
+     * Entrega as mensagens que aguardavam o usuário chegar a esta instância. Sem efeito
+     * quando o broker guarda as mensagens.
+     */
+    default void flushPending(Long userId) {
+    }
+
+    /**
+     * Entrega as mensagens que aguardavam o usuário se inscrever no destino
+     * (ex.: {@code /queue/match-found}).
+     */
+    default void flushPending(Long userId, String destination) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.group_call.call_backend.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Usuários com sessão STOMP aberta nesta instância. Com {@code websocket.broker=relay} o
+ * {@code SimpUserRegistry} também lista os usuários das outras instâncias, então quem
+ * precisa só dos locais consulta este registro.
+ */
+@Component
+public class LocalSessionRegistry {
+
+    private final Map<Long, Set<String>> sessions = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void handleConnected(SessionConnectedEvent event) {
+        Long userId = userId(event.getUser());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (userId != null && sessionId != null) {
+            connected(userId, sessionId);
+        }
+    }
+
+    @EventListener
+    public void handleDisconnected(SessionDisconnectEvent event) {
+        Long userId = userId(event.getUser());
+        if (userId != null) {
+            disconnected(userId, event.getSessionId());
+        }
+    }
+
+    public void connected(Long userId, String sessionId) {
+        sessions.compute(userId, (key, userSessions) -> {
+            Set<String> result = userSessions != null ? userSessions : new HashSet<>();
+            result.add(sessionId);
+            return result;
+        });
+    }
+
+    public void disconnected(Long userId, String sessionId) {
+        sessions.computeIfPresent(userId, (key, userSessions) -> {
+            userSessions.remove(sessionId);
+            return userSessions.isEmpty() ? null : userSessions;
+        });
+    }
+
+    public List<Long> getUserIds() {
+        return List.copyOf(sessions.keySet());
+    }
+
+    private static Long userId(Principal user) {
+        if (user == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(user.getName());
+        } catch (NumberFormatException e) {
+            // sessões sem usuário numérico não entram no registro
+            return null;
+        }
+    }
+}
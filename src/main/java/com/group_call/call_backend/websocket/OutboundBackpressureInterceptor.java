@@ -0,0 +1,268 @@
+package com.group_call.call_backend.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limita as mensagens de saída pendentes de cada sessão: as aceitas pelo canal de saída
+ * que ainda não foram escritas no socket, seja na fila do executor ou no buffer de envio
+ * da sessão. Com a sessão atrasada, os indicadores de digitação são descartados a partir
+ * de {@code websocket.outbound.low-priority-limit} e as demais mensagens a partir de
+ * {@code websocket.outbound.queue-limit}; sinais WebRTC e fim de chamada nunca são
+ * descartados. Uma sessão que chega a {@code websocket.outbound.evict-limit} é
+ * desconectada como consumidor lento.
+ */
+@Component
+public class OutboundBackpressureInterceptor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundBackpressureInterceptor.class);
+    private static final String USER_DESTINATION_PREFIX = "/user";
+    private static final byte[] MESSAGE_FRAME = "MESSAGE\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Ordem de descarte das mensagens de uma sessão atrasada.
+     */
+    public enum Priority {
+        /** Nunca descartada. */
+        CRITICAL,
+        NORMAL,
+        /** Descartada primeiro: o próximo indicador substitui o perdido. */
+        LOW;
+
+        static Priority of(String destination) {
+            if (destination == null) {
+                return CRITICAL;
+            }
+            String queue = destination.startsWith(USER_DESTINATION_PREFIX + "/")
+                    ? destination.substring(USER_DESTINATION_PREFIX.length())
+                    : destination;
+            if (queue.startsWith("/queue/webrtc-signal") || queue.startsWith("/queue/call-ended")) {
+                return CRITICAL;
+            }
+            if (queue.startsWith("/queue/typing")) {
+                return LOW;
+            }
+            return NORMAL;
+        }
+    }
+
+    private static final class SessionQueue {
+        private final WebSocketSession session;
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean evicted = new AtomicBoolean();
+
+        private SessionQueue(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+    private final int lowPriorityLimit;
+    private final int queueLimit;
+    private final int evictLimit;
+
+    private final DistributionSummary depths;
+    private final Counter droppedLow;
+    private final Counter droppedNormal;
+    private final Counter evictions;
+
+    public OutboundBackpressureInterceptor(MeterRegistry meterRegistry,
+            @Value("${websocket.outbound.low-priority-limit:16}") int lowPriorityLimit,
+            @Value("${websocket.outbound.queue-limit:64}") int queueLimit,
+            @Value("${websocket.outbound.evict-limit:256}") int evictLimit) {
+        this.lowPriorityLimit = lowPriorityLimit;
+        this.queueLimit = queueLimit;
+        this.evictLimit = evictLimit;
+
+        this.depths = DistributionSummary.builder("websocket.outbound.depth")
+                .description("Mensagens pendentes na sessão ao aceitar uma nova")
+                .register(meterRegistry);
+        this.droppedLow = droppedCounter(meterRegistry, Priority.LOW);
+        this.droppedNormal = droppedCounter(meterRegistry, Priority.NORMAL);
+        this.evictions = Counter.builder("websocket.outbound.evicted")
+                .description("Sessões desconectadas por consumir devagar")
+                .register(meterRegistry);
+
+        Gauge.builder("websocket.outbound.sessions", sessions, Map::size)
+                .description("Sessões WebSocket abertas nesta instância")
+                .register(meterRegistry);
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, Priority priority) {
+        return Counter.builder("websocket.outbound.dropped")
+                .description("Mensagens descartadas por sessão atrasada")
+                .tag("priority", priority.name())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SessionQueue queue = queueOf(message);
+        if (queue == null) {
+            return message;
+        }
+
+        int depth = queue.depth.get();
+        if (depth >= evictLimit) {
+            evict(queue, depth);
+            return null;
+        }
+
+        Priority priority = Priority.of(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        if (priority == Priority.LOW && depth >= lowPriorityLimit) {
+            droppedLow.increment();
+            return null;
+        }
+        if (priority == Priority.NORMAL && depth >= queueLimit) {
+            droppedNormal.increment();
+            return null;
+        }
+
+        depths.record(queue.depth.incrementAndGet());
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (sent && ex == null) {
+            return;
+        }
+        SessionQueue queue = queueOf(message);
+        if (queue != null) {
+            release(queue);
+        }
+    }
+
+    /**
+     * Só as mensagens destinadas a uma sessão conhecida entram na conta; CONNECTED,
+     * heartbeats e erros não são limitados.
+     */
+    private SessionQueue queueOf(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return null;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    private void evict(SessionQueue queue, int depth) {
+        if (!queue.evicted.compareAndSet(false, true)) {
+            return;
+        }
+        evictions.increment();
+        logger.warn("Sessão desconectada por consumir devagar - sessionId={}, pendentes={}", queue.session.getId(), depth);
+        try {
+            queue.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            logger.warn("Falha ao fechar sessão lenta {}: {}", queue.session.getId(), e.getMessage());
+        }
+    }
+
+    private static void release(SessionQueue queue) {
+        queue.depth.updateAndGet(depth -> depth > 0 ? depth - 1 : 0);
+    }
+
+    /**
+     * Mensagens pendentes por sessão, só das sessões com alguma pendência.
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> result = new HashMap<>();
+        sessions.forEach((sessionId, queue) -> {
+            int depth = queue.depth.get();
+            if (depth > 0) {
+                result.put(sessionId, depth);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionQueue queue = new SessionQueue(session);
+                sessions.put(session.getId(), queue);
+                super.afterConnectionEstablished(new CountingSession(session, queue));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Baixa a pendência quando o frame MESSAGE é de fato escrito no socket.
+     */
+    private static final class CountingSession extends WebSocketSessionDecorator {
+
+        private final SessionQueue queue;
+
+        private CountingSession(WebSocketSession session, SessionQueue queue) {
+            super(session);
+            this.queue = queue;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+            } finally {
+                if (isMessageFrame(message)) {
+                    release(queue);
+                }
+            }
+        }
+
+        private static boolean isMessageFrame(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                return text.getPayload().startsWith("MESSAGE\n");
+            }
+            if (message instanceof BinaryMessage binary) {
+                ByteBuffer payload = binary.getPayload();
+                if (payload.remaining() < MESSAGE_FRAME.length) {
+                    return false;
+                }
+                for (int i = 0; i < MESSAGE_FRAME.length; i++) {
+                    if (payload.get(payload.position() + i) != MESSAGE_FRAME[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.group_call.call_backend.websocket;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/outboundqueues}: mensagens de saída pendentes por sessão WebSocket.
+ * Fica fora das métricas para não criar uma série por sessão.
+ */
+@Component
+@Endpoint(id = "outboundqueues")
+public class OutboundQueuesEndpoint {
+
+    private final OutboundBackpressureInterceptor backpressureInterceptor;
+
+    public OutboundQueuesEndpoint(OutboundBackpressureInterceptor backpressureInterceptor) {
+        this.backpressureInterceptor = backpressureInterceptor;
+    }
+
+    @ReadOperation
+    public Map<String, Integer> queueDepths() {
+        return backpressureInterceptor.getQueueDepths();
+    }
+}
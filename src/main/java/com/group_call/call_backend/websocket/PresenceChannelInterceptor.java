@@ -0,0 +1,37 @@
+package com.group_call.call_backend.websocket;
+
+import com.group_call.call_backend.service.PresenceService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Renova a presença do usuário a cada frame recebido, inclusive os heartbeats STOMP,
+ * sem nenhuma ida ao Redis ou ao banco no caminho da mensagem.
+ */
+@Component
+public class PresenceChannelInterceptor implements ChannelInterceptor {
+
+    private final PresenceService presenceService;
+
+    public PresenceChannelInterceptor(PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (user != null) {
+            try {
+                presenceService.touch(Long.parseLong(user.getName()));
+            } catch (NumberFormatException e) {
+                // sessões sem usuário numérico não têm presença
+            }
+        }
+        return message;
+    }
+}
@@ -1,15 +1,17 @@
 package com.group_call.call_backend.websocket;
 
 import com.group_call.call_backend.dto.ChatMessage;
+import com.group_call.call_backend.dto.QueueJoinRequest;
 import com.group_call.call_backend.dto.WebRTCSignal;
-import com.group_call.call_backend.entity.CallEntity;
 import com.group_call.call_backend.entity.ChatMessageEntity;
-import com.group_call.call_backend.entity.UserEntity;
-import com.group_call.call_backend.repository.CallRepository;
-import com.group_call.call_backend.repository.UserRepository;
+import com.group_call.call_backend.service.CallParticipantCache;
+import com.group_call.call_backend.service.CallParticipantCache.CallParticipants;
 import com.group_call.call_backend.service.ChatMessageService;
+import com.group_call.call_backend.service.InterestIndex;
 import com.group_call.call_backend.service.MatchmakingService;
-import com.group_call.call_backend.service.RedisWebSocketBroadcastService;
+import com.group_call.call_backend.service.QueueShard;
+import com.group_call.call_backend.service.TypingIndicatorCoalescer;
+import com.group_call.call_backend.service.WebSocketBroadcastService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -22,6 +24,7 @@ import org.springframework.stereotype.Controller;
 import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 @Controller
 public class WebSocketController {
@@ -30,24 +33,24 @@ public class WebSocketController {
 
     private final MatchmakingService matchmakingService;
     private final ChatMessageService chatMessageService;
-    private final UserRepository userRepository;
-    private final CallRepository callRepository;
+    private final CallParticipantCache callParticipantCache;
     private final SimpMessagingTemplate messagingTemplate;
-    private final RedisWebSocketBroadcastService redisBroadcast;
+    private final WebSocketBroadcastService broadcastService;
+    private final TypingIndicatorCoalescer typingIndicatorCoalescer;
 
     public WebSocketController(
             MatchmakingService matchmakingService,
             ChatMessageService chatMessageService,
-            UserRepository userRepository,
-            CallRepository callRepository,
+            CallParticipantCache callParticipantCache,
             SimpMessagingTemplate messagingTemplate,
-            RedisWebSocketBroadcastService redisBroadcast) {
+            WebSocketBroadcastService broadcastService,
+            TypingIndicatorCoalescer typingIndicatorCoalescer) {
         this.matchmakingService = matchmakingService;
         this.chatMessageService = chatMessageService;
-        this.userRepository = userRepository;
-        this.callRepository = callRepository;
+        this.callParticipantCache = callParticipantCache;
         this.messagingTemplate = messagingTemplate;
-        this.redisBroadcast = redisBroadcast;
+        this.broadcastService = broadcastService;
+        this.typingIndicatorCoalescer = typingIndicatorCoalescer;
     }
 
     @SubscribeMapping("/connect")
@@ -55,14 +58,21 @@ public class WebSocketController {
         Long userId = Long.parseLong(principal.getName());
         String sessionId = headerAccessor.getSessionId();
         matchmakingService.registerSession(userId, sessionId);
+        broadcastService.flushPending(userId);
     }
 
     @MessageMapping("/join-queue")
-    public void joinQueue(Principal principal) {
+    public void joinQueue(@Payload(required = false) QueueJoinRequest request, Principal principal) {
         Long userId = Long.parseLong(principal.getName());
 
         try {
-            matchmakingService.joinQueue(userId);
+            if (request != null) {
+                matchmakingService.joinQueue(userId,
+                        QueueShard.of(request.getCallType(), request.getLocale()),
+                        InterestIndex.normalize(request.getInterests()));
+            } else {
+                matchmakingService.joinQueue(userId, QueueShard.DEFAULT, Set.of());
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "waiting");
@@ -72,7 +82,7 @@ public class WebSocketController {
                     userId.toString(),
                     "/queue/status",
                     response);
-        } catch (IllegalStateException e) {
+        } catch (IllegalStateException | IllegalArgumentException e) {
             logger.error("Erro ao entrar na fila - userId={}: {}", userId, e.getMessage());
             sendError(userId, e.getMessage());
         }
@@ -84,6 +94,22 @@ public class WebSocketController {
         matchmakingService.leaveQueue(userId);
     }
 
+    @MessageMapping("/accept-match")
+    public void acceptMatch(@Payload Map<String, Object> payload, Principal principal) {
+        Long userId = Long.parseLong(principal.getName());
+
+        try {
+            Object reservationId = payload.get("reservationId");
+            if (reservationId == null) {
+                throw new IllegalArgumentException("reservationId é obrigatório");
+            }
+            matchmakingService.acceptMatch(userId, Long.parseLong(reservationId.toString()));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            logger.warn("Erro ao confirmar pareamento - userId={}: {}", userId, e.getMessage());
+            sendError(userId, e.getMessage());
+        }
+    }
+
     @MessageMapping("/next-person")
     public void nextPerson(Principal principal) {
         Long userId = Long.parseLong(principal.getName());
@@ -118,7 +144,7 @@ public class WebSocketController {
             signalData.put("callId", callId);
             signalData.put("data", signal.getData());
 
-            redisBroadcast.broadcastWebRTCSignal(targetUserId, signalData);
+            broadcastService.broadcastWebRTCSignal(targetUserId, signalData);
         } catch (Exception e) {
             logger.error("Erro ao processar sinal WebRTC: {}", e.getMessage());
             throw e;
@@ -131,40 +157,36 @@ public class WebSocketController {
             Long senderId = Long.parseLong(principal.getName());
             Long callId = message.getCallId();
 
-            CallEntity call = callRepository.findById(callId).orElse(null);
-            if (call == null || call.getStatus() != CallEntity.CallStatus.ACTIVE) {
-                sendError(senderId, "Chamada encerrada");
-                return;
-            }
-
-            UserEntity sender = userRepository.findById(senderId).orElse(null);
-            if (sender == null) {
-                sendError(senderId, "Usuário não encontrado");
+            CallParticipants call = callParticipantCache.get(callId).orElse(null);
+            if (call == null) {
+                sendError(senderId, "Chamada não encontrada ou já finalizada");
                 return;
             }
 
             ChatMessageEntity chatMessage = chatMessageService.createMessage(
-                    callId,
+                    call,
                     senderId,
                     message.getMessage());
 
-            Long recipientId = call.getUser1().getId().equals(senderId)
-                    ? call.getUser2().getId()
-                    : call.getUser1().getId();
+            Long recipientId = call.partnerOf(senderId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", chatMessage.getId());
             response.put("callId", callId);
             response.put("senderId", senderId);
-            response.put("senderName", sender.getName());
+            response.put("senderName", call.nameOf(senderId));
             response.put("recipientId", recipientId);
             response.put("message", message.getMessage());
             response.put("sentAt", chatMessage.getSentAt().toString());
 
-            redisBroadcast.broadcastChatMessage(recipientId, response);
+            broadcastService.broadcastChatMessage(recipientId, response);
         } catch (IllegalArgumentException e) {
             logger.warn("Erro de validação no chat: {}", e.getMessage());
             sendError(Long.parseLong(principal.getName()), e.getMessage());
+        } catch (IllegalStateException e) {
+            logger.debug("Mensagem recusada: {}", e.getMessage());
+            callParticipantCache.evict(message.getCallId());
+            sendError(Long.parseLong(principal.getName()), "Chamada finalizada");
         } catch (Exception e) {
             logger.error("Erro ao enviar mensagem: {}", e.getMessage());
             sendError(Long.parseLong(principal.getName()), "Erro ao enviar mensagem");
@@ -178,21 +200,24 @@ public class WebSocketController {
             Long callId = Long.parseLong(payload.get("callId").toString());
             boolean isTyping = payload.containsKey("isTyping") ? (Boolean) payload.get("isTyping") : true;
 
-            CallEntity call = callRepository.findById(callId).orElse(null);
-            if (call == null || call.getStatus() != CallEntity.CallStatus.ACTIVE) {
+            // Participação primeiro: só quem está na chamada deixa estado no filtro
+            CallParticipants call = callParticipantCache.get(callId).orElse(null);
+            if (call == null || !call.includes(senderId)) {
+                return;
+            }
+
+            if (!typingIndicatorCoalescer.shouldForward(callId, senderId, isTyping)) {
                 return;
             }
 
-            Long recipientId = call.getUser1().getId().equals(senderId)
-                    ? call.getUser2().getId()
-                    : call.getUser1().getId();
+            Long recipientId = call.partnerOf(senderId);
 
             Map<String, Object> typingData = Map.of(
                 "isTyping", isTyping,
                 "userId", senderId
             );
             
-            redisBroadcast.broadcastTypingIndicator(recipientId, typingData);
+            broadcastService.broadcastTypingIndicator(recipientId, typingData);
         } catch (Exception e) {
             logger.error("Erro ao processar typing indicator: {}", e.getMessage());
         }
@@ -206,6 +231,6 @@ public class WebSocketController {
 
     private void sendError(Long userId, String message) {
         Map<String, Object> errorData = Map.of("error", message);
-        redisBroadcast.broadcastError(userId, errorData);
+        broadcastService.broadcastError(userId, errorData);
     }
 }
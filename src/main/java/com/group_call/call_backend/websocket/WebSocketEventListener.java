@@ -1,18 +1,85 @@
 package com.group_call.call_backend.websocket;
 
 import com.group_call.call_backend.service.MatchmakingService;
+import com.group_call.call_backend.service.MessageTransport;
+import com.group_call.call_backend.service.UserNodeRegistry;
+import com.group_call.call_backend.service.WebSocketBroadcastService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
+/**
+ * Reage ao ciclo de vida das sessões STOMP. O registro de instância e o
+ * {@link MessageTransport} só existem com o broker em memória; com o relay a conexão e a
+ * desconexão não tocam o Redis.
+ */
 @Component
 public class WebSocketEventListener {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketEventListener.class);
+    private static final String USER_DESTINATION_PREFIX = "/user/";
+
     private final MatchmakingService matchmakingService;
+    private final UserNodeRegistry userNodeRegistry;
+    private final SimpUserRegistry simpUserRegistry;
+    private final MessageTransport messageTransport;
+    private final WebSocketBroadcastService broadcastService;
 
-    public WebSocketEventListener(MatchmakingService matchmakingService) {
+    public WebSocketEventListener(MatchmakingService matchmakingService,
+            ObjectProvider<UserNodeRegistry> userNodeRegistry,
+            SimpUserRegistry simpUserRegistry,
+            ObjectProvider<MessageTransport> messageTransport,
+            WebSocketBroadcastService broadcastService) {
         this.matchmakingService = matchmakingService;
+        this.userNodeRegistry = userNodeRegistry.getIfAvailable();
+        this.simpUserRegistry = simpUserRegistry;
+        this.messageTransport = messageTransport.getIfAvailable();
+        this.broadcastService = broadcastService;
+    }
+
+    @EventListener
+    public void handleWebSocketConnectedListener(SessionConnectedEvent event) {
+        if (event.getUser() == null || userNodeRegistry == null) {
+            return;
+        }
+
+        try {
+            Long userId = Long.parseLong(event.getUser().getName());
+            userNodeRegistry.register(userId);
+            if (messageTransport != null) {
+                messageTransport.userConnected(userId);
+            }
+        } catch (Exception e) {
+            logger.warn("Falha ao registrar instância do usuário {}: {}", event.getUser().getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Entrega o que aguardava o usuário neste destino. Só depois da inscrição: antes dela
+     * o broker descartaria a mensagem.
+     */
+    @EventListener
+    public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = headerAccessor.getDestination();
+        if (event.getUser() == null || destination == null || !destination.startsWith(USER_DESTINATION_PREFIX)) {
+            return;
+        }
+
+        try {
+            Long userId = Long.parseLong(event.getUser().getName());
+            broadcastService.flushPending(userId, destination.substring(USER_DESTINATION_PREFIX.length() - 1));
+        } catch (Exception e) {
+            logger.warn("Falha ao entregar mensagens pendentes do usuário {}: {}", event.getUser().getName(), e.getMessage());
+        }
     }
 
     @EventListener
@@ -23,9 +90,21 @@ public class WebSocketEventListener {
         
         if (userIdStr != null) {
             Long userId = Long.parseLong(userIdStr);
-            
+
+            if (userNodeRegistry != null && !hasOtherLocalSession(userIdStr, event.getSessionId())) {
+                try {
+                    userNodeRegistry.unregister(userId);
+                } catch (Exception e) {
+                    logger.warn("Falha ao remover instância do usuário {}: {}", userId, e.getMessage());
+                }
+            }
             
             matchmakingService.cleanupUserOnDisconnect(userId);
         }
     }
+
+    private boolean hasOtherLocalSession(String userId, String sessionId) {
+        SimpUser user = simpUserRegistry.getUser(userId);
+        return user != null && user.getSessions().stream().anyMatch(session -> !session.getId().equals(sessionId));
+    }
 }
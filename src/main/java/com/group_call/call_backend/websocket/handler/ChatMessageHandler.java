@@ -20,7 +20,7 @@ public class ChatMessageHandler implements MessageHandler {
             }
             
             messagingTemplate.convertAndSendToUser(
-                message.getTargetUserId().toString(),
+                message.getTargetUserName(),
                 message.getDestination(),
                 message.getPayload()
             );
@@ -30,8 +30,8 @@ public class ChatMessageHandler implements MessageHandler {
     }
     
     @Override
-    public boolean supports(WebSocketMessage message) {
-        return message.getMessageType() == WebSocketMessageType.CHAT_MESSAGE;
+    public WebSocketMessageType getMessageType() {
+        return WebSocketMessageType.CHAT_MESSAGE;
     }
     
     @Override
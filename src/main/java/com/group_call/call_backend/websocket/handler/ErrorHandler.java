@@ -16,7 +16,7 @@ public class ErrorHandler implements MessageHandler {
     public void handleMessage(WebSocketMessage message, SimpMessagingTemplate messagingTemplate) {
         try {
             messagingTemplate.convertAndSendToUser(
-                message.getTargetUserId().toString(),
+                message.getTargetUserName(),
                 message.getDestination(),
                 message.getPayload()
             );
@@ -26,8 +26,8 @@ public class ErrorHandler implements MessageHandler {
     }
     
     @Override
-    public boolean supports(WebSocketMessage message) {
-        return message.getMessageType() == WebSocketMessageType.ERROR;
+    public WebSocketMessageType getMessageType() {
+        return WebSocketMessageType.ERROR;
     }
     
     @Override
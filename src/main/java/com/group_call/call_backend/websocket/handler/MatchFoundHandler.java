@@ -16,7 +16,7 @@ public class MatchFoundHandler implements MessageHandler {
     public void handleMessage(WebSocketMessage message, SimpMessagingTemplate messagingTemplate) {
         try {
             messagingTemplate.convertAndSendToUser(
-                message.getTargetUserId().toString(),
+                message.getTargetUserName(),
                 message.getDestination(),
                 message.getPayload()
             );
@@ -26,8 +26,8 @@ public class MatchFoundHandler implements MessageHandler {
     }
     
     @Override
-    public boolean supports(WebSocketMessage message) {
-        return message.getMessageType() == WebSocketMessageType.MATCH_FOUND;
+    public WebSocketMessageType getMessageType() {
+        return WebSocketMessageType.MATCH_FOUND;
     }
     
     @Override
@@ -0,0 +1,37 @@
+package com.group_call.call_backend.websocket.handler;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MatchProposedHandler implements MessageHandler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MatchProposedHandler.class);
+    
+    @Override
+    public void handleMessage(WebSocketMessage message, SimpMessagingTemplate messagingTemplate) {
+        try {
+            messagingTemplate.convertAndSendToUser(
+                message.getTargetUserName(),
+                message.getDestination(),
+                message.getPayload()
+            );
+        } catch (Exception e) {
+            logger.error("Erro ao processar proposta de match: {}", e.getMessage());
+        }
+    }
+    
+    @Override
+    public WebSocketMessageType getMessageType() {
+        return WebSocketMessageType.MATCH_PROPOSED;
+    }
+    
+    @Override
+    public String getHandlerName() {
+        return "MatchProposedHandler";
+    }
+}
@@ -1,6 +1,7 @@
 package com.group_call.call_backend.websocket.handler;
 
 import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 public interface MessageHandler {
@@ -10,9 +11,9 @@ public interface MessageHandler {
     void handleMessage(WebSocketMessage message, SimpMessagingTemplate messagingTemplate);
     
     /**
-     * Verifica se este handler suporta o tipo de mensagem
+     * Tipo de mensagem tratado por este handler; cada tipo tem um único handler
      */
-    boolean supports(WebSocketMessage message);
+    WebSocketMessageType getMessageType();
     
     /**
      * Nome do handler para logs
@@ -1,32 +1,76 @@
 package com.group_call.call_backend.websocket.handler;
 
 import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Despacha cada mensagem ao handler do seu tipo. Os handlers são indexados por
+ * {@link WebSocketMessageType} na inicialização; dois handlers para o mesmo tipo impedem a
+ * aplicação de subir. Cada tipo tem o contador {@code websocket.delivery} e o timer
+ * {@code websocket.delivery.latency}.
+ */
 @Component
 public class MessageHandlerFactory {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(MessageHandlerFactory.class);
-    
-    private final List<MessageHandler> handlers;
-    
-    public MessageHandlerFactory(List<MessageHandler> handlers) {
-        this.handlers = handlers;
+
+    private record Route(MessageHandler handler, Counter delivered, Timer latency) {
     }
-    
-    public void processMessage(WebSocketMessage message, SimpMessagingTemplate messagingTemplate) {
+
+    private final Map<WebSocketMessageType, Route> routes = new EnumMap<>(WebSocketMessageType.class);
+
+    public MessageHandlerFactory(List<MessageHandler> handlers, MeterRegistry meterRegistry) {
         for (MessageHandler handler : handlers) {
-            if (handler.supports(message)) {
-                handler.handleMessage(message, messagingTemplate);
-                return;
+            WebSocketMessageType type = handler.getMessageType();
+            if (type == null) {
+                throw new IllegalStateException("Handler sem tipo de mensagem: " + handler.getHandlerName());
+            }
+
+            Route route = new Route(handler,
+                    Counter.builder("websocket.delivery")
+                            .description("Mensagens entregues ao broker local")
+                            .tag("type", type.name())
+                            .register(meterRegistry),
+                    Timer.builder("websocket.delivery.latency")
+                            .description("Tempo de entrega ao broker local")
+                            .tag("type", type.name())
+                            .register(meterRegistry));
+            Route previous = routes.putIfAbsent(type, route);
+            if (previous != null) {
+                throw new IllegalStateException("Tipo " + type + " registrado por " + previous.handler().getHandlerName()
+                        + " e " + handler.getHandlerName());
             }
         }
-        
-        logger.warn("Nenhum handler encontrado para messageType={}", message.getMessageType());
+
+        for (WebSocketMessageType type : WebSocketMessageType.values()) {
+            if (!routes.containsKey(type)) {
+                logger.warn("Nenhum handler registrado para messageType={}", type);
+            }
+        }
+    }
+
+    public void processMessage(WebSocketMessage message, SimpMessagingTemplate messagingTemplate) {
+        Route route = message.getMessageType() != null ? routes.get(message.getMessageType()) : null;
+        if (route == null) {
+            logger.warn("Nenhum handler encontrado para messageType={}", message.getMessageType());
+            return;
+        }
+
+        long start = System.nanoTime();
+        route.handler().handleMessage(message, messagingTemplate);
+        route.latency().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        route.delivered().increment();
     }
 }
@@ -0,0 +1,65 @@
+package com.group_call.call_backend.websocket.message;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Codec padrão: grava em Smile (JSON binário, com nomes de campos e valores repetidos
+ * referenciados em vez de repetidos) ou em JSON, conforme {@code websocket.codec}. A
+ * leitura detecta o formato pelo cabeçalho do Smile, então instâncias com configurações
+ * diferentes conversam entre si.
+ */
+@Component
+public class JacksonWebSocketMessageCodec implements WebSocketMessageCodec {
+
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper writer;
+
+    public JacksonWebSocketMessageCodec(@Value("${websocket.codec:smile}") String format) {
+        this.jsonMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        this.smileMapper = new ObjectMapper(SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build())
+                .registerModule(new JavaTimeModule());
+
+        this.writer = switch (format) {
+            case "smile" -> smileMapper;
+            case "json" -> jsonMapper;
+            default -> throw new IllegalArgumentException("Codec de mensagens desconhecido: " + format);
+        };
+    }
+
+    @Override
+    public byte[] encode(WebSocketMessage message) {
+        try {
+            return writer.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Falha ao serializar mensagem messageId=" + message.getMessageId(), e);
+        }
+    }
+
+    @Override
+    public WebSocketMessage decode(byte[] bytes) {
+        try {
+            return (isSmile(bytes) ? smileMapper : jsonMapper).readValue(bytes, WebSocketMessage.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Falha ao desserializar mensagem", e);
+        }
+    }
+
+    private static boolean isSmile(byte[] bytes) {
+        return bytes.length >= SMILE_HEADER.length
+                && bytes[0] == SMILE_HEADER[0]
+                && bytes[1] == SMILE_HEADER[1]
+                && bytes[2] == SMILE_HEADER[2];
+    }
+}
@@ -1,8 +1,13 @@
 package com.group_call.call_backend.websocket.message;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.Map;
@@ -10,7 +15,6 @@ import java.util.UUID;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class WebSocketMessage {
     private String messageId;
     private WebSocketMessageType messageType;
@@ -19,28 +23,48 @@ public class WebSocketMessage {
     private Map<String, Object> payload;
     private LocalDateTime timestamp;
     private String serverId; // Identificar servidor de origem
-    
-    public WebSocketMessage(WebSocketMessageType messageType, Long targetUserId, String destination, Map<String, Object> payload) {
-        this.messageId = UUID.randomUUID().toString();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient String targetUserName;
+
+    public WebSocketMessage(String messageId, WebSocketMessageType messageType, Long targetUserId, String destination,
+            Map<String, Object> payload, LocalDateTime timestamp, String serverId) {
+        this.messageId = messageId;
         this.messageType = messageType;
         this.targetUserId = targetUserId;
         this.destination = destination;
         this.payload = payload;
-        this.timestamp = LocalDateTime.now();
-        this.serverId = getServerIdentifier();
+        this.timestamp = timestamp;
+        this.serverId = serverId;
     }
-    
-    private String getServerIdentifier() {
-        // Usa variável de ambiente do Fly.io ou hostname
-        String flyMachineId = System.getenv("FLY_MACHINE_ID");
-        if (flyMachineId != null && !flyMachineId.isEmpty()) {
-            return flyMachineId;
-        }
-        
-        try {
-            return java.net.InetAddress.getLocalHost().getHostName();
-        } catch (Exception e) {
-            return "unknown";
+
+    /**
+     * Mensagem avulsa, sem instância de origem. Nos envios use
+     * {@link WebSocketMessageFactory}, que não gera UUID.
+     */
+    public WebSocketMessage(WebSocketMessageType messageType, Long targetUserId, String destination, Map<String, Object> payload) {
+        this(UUID.randomUUID().toString(), messageType, targetUserId, destination, payload, LocalDateTime.now(), null);
+    }
+
+    public void setTargetUserId(Long targetUserId) {
+        this.targetUserId = targetUserId;
+        this.targetUserName = null;
+    }
+
+    /**
+     * Nome do destinatário no {@code SimpUserRegistry} (o userId como texto), calculado uma
+     * única vez por mensagem.
+     */
+    @JsonIgnore
+    public String getTargetUserName() {
+        String name = targetUserName;
+        if (name == null && targetUserId != null) {
+            name = targetUserId.toString();
+            targetUserName = name;
         }
+        return name;
     }
 }
@@ -0,0 +1,16 @@
+package com.group_call.call_backend.websocket.message;
+
+/**
+ * Serialização de {@link WebSocketMessage} para o transporte entre instâncias, sobre os
+ * bytes crus publicados e recebidos no Redis.
+ */
+public interface WebSocketMessageCodec {
+
+    byte[] encode(WebSocketMessage message);
+
+    /**
+     * Decodifica a mensagem. Deve aceitar também o formato das instâncias que ainda não
+     * usam este codec, para permitir deploys graduais.
+     */
+    WebSocketMessage decode(byte[] bytes);
+}
@@ -0,0 +1,37 @@
+package com.group_call.call_backend.websocket.message;
+
+import com.group_call.call_backend.service.UserNodeRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cria as mensagens enviadas aos usuários. A identidade da instância é resolvida uma vez
+ * na inicialização e o messageId é o prefixo da instância seguido de um contador, sem
+ * UUID. O timestamp só é preenchido quando a mensagem sai para outra instância.
+ */
+@Component
+public class WebSocketMessageFactory {
+
+    private final String serverId;
+    private final String idPrefix;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public WebSocketMessageFactory(@Value("${websocket.node-id:}") String nodeId) {
+        this.serverId = UserNodeRegistry.resolveNodeId(nodeId);
+        // O início do processo separa os contadores de reinícios com o mesmo nodeId
+        this.idPrefix = serverId + "-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    }
+
+    public WebSocketMessage create(WebSocketMessageType messageType, Long targetUserId, String destination,
+            Map<String, Object> payload) {
+        return new WebSocketMessage(idPrefix + sequence.incrementAndGet(), messageType, targetUserId, destination,
+                payload, null, serverId);
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+}
@@ -4,6 +4,7 @@ public enum WebSocketMessageType {
     CHAT_MESSAGE("chat"),
     TYPING_INDICATOR("typing"),
     WEBRTC_SIGNAL("webrtc"),
+    MATCH_PROPOSED("match_proposed"),
     MATCH_FOUND("match"),
     CALL_ENDED("call_ended"),
     ERROR("error");
@@ -17,4 +18,18 @@ public enum WebSocketMessageType {
     public String getType() {
         return type;
     }
+
+    /**
+     * Tipo correspondente a um destino como {@code /queue/match-found}.
+     */
+    public static WebSocketMessageType fromDestination(String destination) {
+        if (destination.contains("chat")) return CHAT_MESSAGE;
+        if (destination.contains("typing")) return TYPING_INDICATOR;
+        if (destination.contains("webrtc")) return WEBRTC_SIGNAL;
+        if (destination.contains("match-proposed")) return MATCH_PROPOSED;
+        if (destination.contains("match")) return MATCH_FOUND;
+        if (destination.contains("call-ended")) return CALL_ENDED;
+        if (destination.contains("error")) return ERROR;
+        return CHAT_MESSAGE;
+    }
 }
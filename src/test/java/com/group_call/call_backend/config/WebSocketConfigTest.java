@@ -0,0 +1,90 @@
+package com.group_call.call_backend.config;
+
+import com.group_call.call_backend.websocket.OutboundBackpressureInterceptor;
+import com.group_call.call_backend.websocket.PresenceChannelInterceptor;
+import com.group_call.call_backend.websocket.WebSocketAuthInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class WebSocketConfigTest {
+
+    /** Expõe o executor que o Spring montaria para o canal. */
+    private static class ResolvedChannelRegistration extends ChannelRegistration {
+
+        private final Executor fallback = mock(Executor.class);
+
+        Executor resolveExecutor() {
+            return getExecutor(() -> fallback, executor -> {
+            });
+        }
+    }
+
+    @Test
+    void channelsRunOnVirtualThreadsWhenEnabledAndOnFixedPoolsOtherwise() throws Exception {
+        ResolvedChannelRegistration inbound = new ResolvedChannelRegistration();
+        config(true, 4).configureClientInboundChannel(inbound);
+        Executor virtual = inbound.resolveExecutor();
+        assertThat(virtual).isInstanceOfSatisfying(SimpleAsyncTaskExecutor.class,
+                executor -> assertThat(executor.getConcurrencyLimit()).isEqualTo(4));
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        virtual.execute(() -> thread.complete(Thread.currentThread()));
+        assertThat(thread.get(5, TimeUnit.SECONDS).isVirtual()).isTrue();
+        assertThat(thread.get().getName()).startsWith("ws-inbound-");
+
+        ResolvedChannelRegistration outbound = new ResolvedChannelRegistration();
+        config(false, 4).configureClientOutboundChannel(outbound);
+        assertThat(outbound.resolveExecutor()).isInstanceOfSatisfying(ThreadPoolTaskExecutor.class, pool -> {
+            assertThat(pool.getCorePoolSize()).isEqualTo(4);
+            assertThat(pool.getMaxPoolSize()).isEqualTo(4);
+        });
+
+        // Sem virtual threads nem tamanho configurado, fica o padrão do Spring
+        ResolvedChannelRegistration defaults = new ResolvedChannelRegistration();
+        config(false, 0).configureClientInboundChannel(defaults);
+        assertThat(defaults.resolveExecutor()).isSameAs(defaults.fallback);
+
+        // Com virtual threads e sem tamanho configurado, o limite acompanha as CPUs
+        ResolvedChannelRegistration bounded = new ResolvedChannelRegistration();
+        config(true, 0).configureClientOutboundChannel(bounded);
+        assertThat(bounded.resolveExecutor()).isInstanceOfSatisfying(SimpleAsyncTaskExecutor.class,
+                executor -> assertThat(executor.getConcurrencyLimit())
+                        .isEqualTo(Runtime.getRuntime().availableProcessors() * 64));
+    }
+
+    @Test
+    void framesOfASessionKeepTheirOrderInBothDirections() {
+        WebSocketConfig config = config(true, 0);
+
+        MessageBrokerRegistry brokerRegistry = new MessageBrokerRegistry(
+                mock(SubscribableChannel.class), mock(MessageChannel.class));
+        config.configureMessageBroker(brokerRegistry);
+        assertThat(ReflectionTestUtils.getField(brokerRegistry, "preservePublishOrder")).isEqualTo(true);
+
+        StompEndpointRegistry endpointRegistry = mock(StompEndpointRegistry.class, RETURNS_DEEP_STUBS);
+        config.registerStompEndpoints(endpointRegistry);
+        verify(endpointRegistry).setPreserveReceiveOrder(true);
+    }
+
+    private static WebSocketConfig config(boolean virtualThreads, int poolSize) {
+        return new WebSocketConfig(mock(WebSocketAuthInterceptor.class), mock(PresenceChannelInterceptor.class),
+                mock(OutboundBackpressureInterceptor.class), mock(TaskScheduler.class), 10_000, 5_000, 262_144,
+                65_536, poolSize, poolSize, virtualThreads, "simple", "localhost", 61_613, "guest", "guest");
+    }
+}
@@ -0,0 +1,44 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.handler.CallEndedHandler;
+import com.group_call.call_backend.websocket.handler.ChatMessageHandler;
+import com.group_call.call_backend.websocket.handler.MessageHandlerFactory;
+import com.group_call.call_backend.websocket.handler.TypingIndicatorHandler;
+import com.group_call.call_backend.websocket.message.WebSocketMessageFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class BrokerRelayBroadcastServiceTest {
+
+    @Test
+    void everyMessageGoesStraightToTheBrokerAsAUserDestination() {
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        MessageHandlerFactory handlers = new MessageHandlerFactory(
+                List.of(new ChatMessageHandler(), new TypingIndicatorHandler(), new CallEndedHandler()),
+                new SimpleMeterRegistry());
+        BrokerRelayBroadcastService broadcastService = new BrokerRelayBroadcastService(messagingTemplate, handlers,
+                new WebSocketMessageFactory("node-a"));
+
+        broadcastService.broadcastChatMessage(5L, Map.of("message", "oi"));
+        broadcastService.broadcastTypingIndicator(5L, Map.of("isTyping", true));
+        broadcastService.broadcastCallEnded(6L, Map.of("callId", 10L));
+        broadcastService.broadcastToUser(6L, "/queue/status", Map.of("status", "waiting"));
+        // Com o relay o broker guarda o que chega antes da inscrição: não há pendentes aqui
+        broadcastService.flushPending(5L);
+        broadcastService.flushPending(5L, "/queue/chat");
+
+        verify(messagingTemplate).convertAndSendToUser("5", "/queue/chat", Map.of("message", "oi"));
+        verify(messagingTemplate).convertAndSendToUser("5", "/queue/typing", Map.of("isTyping", true));
+        verify(messagingTemplate).convertAndSendToUser("6", "/queue/call-ended", Map.of("callId", 10L));
+        verify(messagingTemplate).convertAndSendToUser("6", "/queue/status", Map.of("status", "waiting"));
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+}
@@ -0,0 +1,52 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class CallParticipantCacheTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void participantsOfNewCallsAreCachedUntilTheCallEnds() {
+        CallRepository callRepository = mock(CallRepository.class);
+        RedisTemplate<String, String> stringRedisTemplate = mock(RedisTemplate.class);
+        CallParticipantCache callParticipantCache = new CallParticipantCache(callRepository, stringRedisTemplate,
+                new RedisMessageListenerContainer(), 1_000);
+
+        CallEntity call = new CallEntity();
+        call.setId(10L);
+        call.setUser1(user(1L));
+        call.setUser2(user(2L));
+        call.setStatus(CallEntity.CallStatus.ACTIVE);
+        callParticipantCache.put(call);
+
+        assertThat(callParticipantCache.get(10L)).hasValueSatisfying(participants -> {
+            assertThat(participants.partnerOf(1L)).isEqualTo(2L);
+            assertThat(participants.nameOf(2L)).isEqualTo("user-2");
+            assertThat(participants.includes(3L)).isFalse();
+        });
+        verify(callRepository, never()).findByIdWithUsers(anyLong());
+
+        callParticipantCache.evict(10L);
+        verify(stringRedisTemplate).convertAndSend("calls:ended", "10");
+        assertThat(callParticipantCache.get(10L)).isEmpty();
+        verify(callRepository).findByIdWithUsers(10L);
+    }
+
+    private static UserEntity user(Long id) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        user.setName("user-" + id);
+        return user;
+    }
+}
@@ -0,0 +1,73 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CallServiceTest {
+
+    private CallRepository callRepository;
+    private CallParticipantCache callParticipantCache;
+    private RedisMatchmakingService redisMatchmaking;
+    private CallService callService;
+
+    @BeforeEach
+    void setUp() {
+        callRepository = mock(CallRepository.class);
+        when(callRepository.save(any(CallEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        callParticipantCache = mock(CallParticipantCache.class);
+        redisMatchmaking = mock(RedisMatchmakingService.class);
+        callService = new CallService(mock(UserService.class), callRepository, callParticipantCache, redisMatchmaking);
+    }
+
+    @Test
+    void endedCallsReleaseTheActiveCallIndexOfBothUsers() {
+        when(callRepository.findById(10L)).thenReturn(Optional.of(activeCall(10L)));
+
+        assertThat(callService.endCall(10L).getStatus()).isEqualTo(CallEntity.CallStatus.COMPLETED);
+
+        verify(callParticipantCache).evict(10L);
+        verify(redisMatchmaking).clearActiveCall(10L, 1L, 2L);
+        verify(redisMatchmaking).removeUserFromCall(1L);
+        verify(redisMatchmaking).removeUserFromCall(2L);
+    }
+
+    @Test
+    void cancelledCallsReleaseTheActiveCallIndexOfBothUsers() {
+        when(callRepository.findById(11L)).thenReturn(Optional.of(activeCall(11L)));
+
+        assertThat(callService.cancelCall(11L).getStatus()).isEqualTo(CallEntity.CallStatus.CANCELLED);
+
+        verify(callParticipantCache).evict(11L);
+        verify(redisMatchmaking).clearActiveCall(11L, 1L, 2L);
+        verify(redisMatchmaking).removeUserFromCall(1L);
+        verify(redisMatchmaking).removeUserFromCall(2L);
+    }
+
+    private static CallEntity activeCall(Long callId) {
+        CallEntity call = new CallEntity();
+        call.setId(callId);
+        call.setUser1(user(1L));
+        call.setUser2(user(2L));
+        call.setStatus(CallEntity.CallStatus.ACTIVE);
+        call.setStartedAt(LocalDateTime.now().minusMinutes(1));
+        return call;
+    }
+
+    private static UserEntity user(Long id) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        return user;
+    }
+}
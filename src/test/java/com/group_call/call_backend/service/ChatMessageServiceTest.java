@@ -0,0 +1,79 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.entity.ChatMessageEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import com.group_call.call_backend.repository.ChatMessageRepository;
+import com.group_call.call_backend.repository.UserRepository;
+import com.group_call.call_backend.service.CallParticipantCache.CallParticipants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatMessageServiceTest {
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private ChatMessageRepository chatMessageRepository;
+    private ChatMessageService chatMessageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        when(chatMessageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        chatMessageService = new ChatMessageService(chatMessageRepository, mock(CallRepository.class),
+                mock(UserRepository.class), mock(CallService.class), mock(UserService.class), redisMatchmaking);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void cachedCallsAreCheckedAgainstTheActiveCallIndexBeforeSaving() {
+        CallParticipants call = new CallParticipants(10L, 1L, "Ana", 2L, "Bruno");
+        redisMatchmaking.setActiveCall(10L, 1L, 2L);
+
+        ChatMessageEntity saved = chatMessageService.createMessage(call, 1L, "oi");
+        assertThat(saved.getMessageText()).isEqualTo("oi");
+
+        // Encerrada em outra instância antes da invalidação chegar ao cache
+        redisMatchmaking.clearActiveCall(10L, 1L, 2L);
+        assertThatThrownBy(() -> chatMessageService.createMessage(call, 2L, "tchau"))
+                .isInstanceOf(IllegalStateException.class);
+
+        // Já em outra chamada: a entrada velha do cache não vale mais
+        redisMatchmaking.setActiveCall(11L, 2L, 3L);
+        assertThatThrownBy(() -> chatMessageService.createMessage(call, 2L, "tchau"))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThatThrownBy(() -> chatMessageService.createMessage(call, 3L, "oi"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(chatMessageRepository).save(any());
+    }
+}
@@ -0,0 +1,186 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import com.group_call.call_backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MatchmakingServiceConcurrencyTest {
+
+    private static final int USERS = 400;
+    private static final int THREADS = 16;
+    private static final int MATCHERS = 3;
+    private static final QueueShard AUDIO_PT = QueueShard.of("audio", "pt-BR");
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private MatchmakingWorker matchmakingWorker;
+    private MatchmakingService matchmakingService;
+
+    private final Queue<Long> notifiedUsers = new ConcurrentLinkedQueue<>();
+    private final Queue<CallEntity> savedCalls = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<UserEntity> users = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                UserEntity user = new UserEntity();
+                user.setId(id);
+                user.setName("user-" + id);
+                users.add(user);
+            }
+            return users;
+        });
+
+        AtomicLong callIds = new AtomicLong();
+        CallRepository callRepository = mock(CallRepository.class);
+        when(callRepository.save(any(CallEntity.class))).thenAnswer(invocation -> {
+            CallEntity call = invocation.getArgument(0);
+            call.setId(callIds.incrementAndGet());
+            savedCalls.add(call);
+            return call;
+        });
+
+        WebSocketBroadcastService broadcastService = mock(WebSocketBroadcastService.class);
+        doAnswer(invocation -> {
+            notifiedUsers.add(invocation.getArgument(0));
+            return null;
+        }).when(broadcastService).broadcastMatchFound(anyLong(), anyMap());
+        // Os clientes confirmam a proposta assim que a recebem
+        doAnswer(invocation -> {
+            Map<String, Object> proposal = invocation.getArgument(1);
+            matchmakingService.acceptMatch(invocation.getArgument(0), (Long) proposal.get("reservationId"));
+            return null;
+        }).when(broadcastService).broadcastMatchProposed(anyLong(), anyMap());
+
+        RecentPartnerFilter recentPartnerFilter = mock(RecentPartnerFilter.class);
+        matchmakingWorker = new MatchmakingWorker(redisMatchmaking, userRepository, broadcastService,
+                new PartnerSelector(recentPartnerFilter, 60_000, 0.5, 60_000), recentPartnerFilter, 10, 8, 32, 60_000, 2, 5_000);
+        matchmakingService = new MatchmakingService(userRepository, callRepository, redisMatchmaking,
+                broadcastService, matchmakingWorker, mock(CallParticipantCache.class), mock(PresenceService.class),
+                new MatchmakingMetrics(new SimpleMeterRegistry(), redisMatchmaking));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        matchmakingWorker.stop();
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void concurrentJoinsNeverLoseOrDuplicateUsers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Simula o loop de pareamento de várias instâncias disputando a mesma fila
+        AtomicBoolean joining = new AtomicBoolean(true);
+        List<Future<?>> matchers = new ArrayList<>();
+        for (int i = 0; i < MATCHERS; i++) {
+            matchers.add(executor.submit(() -> {
+                start.await();
+                while (joining.get()) {
+                    matchmakingWorker.matchBatch();
+                }
+                return null;
+            }));
+        }
+
+        for (long userId = 1; userId <= USERS; userId++) {
+            long id = userId;
+            futures.add(executor.submit(() -> {
+                start.await();
+                matchmakingService.joinQueue(id, id % 2 == 0 ? QueueShard.DEFAULT : AUDIO_PT, Set.of());
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        joining.set(false);
+        for (Future<?> matcher : matchers) {
+            matcher.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        while (matchmakingWorker.matchBatch() > 0) {
+            // drena o que sobrou na fila
+        }
+
+        Set<Long> matched = new HashSet<>();
+        for (CallEntity call : savedCalls) {
+            assertThat(call.getUser1().getId()).isNotEqualTo(call.getUser2().getId());
+            assertThat(call.getUser1().getId() % 2).isEqualTo(call.getUser2().getId() % 2);
+            assertThat(call.getCallType()).isEqualTo(call.getUser1().getId() % 2 == 0
+                    ? CallEntity.CallType.VIDEO
+                    : CallEntity.CallType.AUDIO);
+            assertThat(matched.add(call.getUser1().getId())).isTrue();
+            assertThat(matched.add(call.getUser2().getId())).isTrue();
+        }
+
+        List<Long> waiting = new ArrayList<>(redisMatchmaking.getQueueUsers(QueueShard.DEFAULT, 0, USERS));
+        waiting.addAll(redisMatchmaking.getQueueUsers(AUDIO_PT, 0, USERS));
+        assertThat(waiting).doesNotHaveDuplicates();
+        assertThat(waiting).doesNotContainAnyElementsOf(matched);
+
+        Set<Long> everyone = new HashSet<>(matched);
+        everyone.addAll(waiting);
+        assertThat(everyone).hasSize(USERS);
+        assertThat(matched.size() + waiting.size()).isEqualTo(USERS);
+
+        assertThat(notifiedUsers).hasSize(matched.size()).doesNotHaveDuplicates();
+        assertThat(waiting).hasSizeLessThan(3);
+    }
+}
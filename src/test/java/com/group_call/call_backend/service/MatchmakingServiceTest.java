@@ -0,0 +1,211 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.entity.UserEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import com.group_call.call_backend.repository.UserRepository;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MatchmakingServiceTest {
+
+    private static final int WINDOW_SIZE = 32;
+    private static final long LEASE_MS = 5_000;
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private CallRepository callRepository;
+    private WebSocketBroadcastService broadcastService;
+    private CallParticipantCache callParticipantCache;
+    private MatchmakingWorker matchmakingWorker;
+    private MatchmakingService matchmakingService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<UserEntity> users = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                UserEntity user = new UserEntity();
+                user.setId(id);
+                user.setName("user-" + id);
+                users.add(user);
+            }
+            return users;
+        });
+        AtomicLong callIds = new AtomicLong();
+        callRepository = mock(CallRepository.class);
+        when(callRepository.save(any(CallEntity.class))).thenAnswer(invocation -> {
+            CallEntity call = invocation.getArgument(0);
+            if (call.getId() == null) {
+                call.setId(callIds.incrementAndGet());
+            }
+            return call;
+        });
+        broadcastService = mock(WebSocketBroadcastService.class);
+        callParticipantCache = mock(CallParticipantCache.class);
+
+        RecentPartnerFilter recentPartnerFilter = mock(RecentPartnerFilter.class);
+        matchmakingWorker = new MatchmakingWorker(redisMatchmaking, userRepository, broadcastService,
+                new PartnerSelector(recentPartnerFilter, 60_000, 0.5, 60_000), recentPartnerFilter, 10, 8, WINDOW_SIZE, 60_000, 1, LEASE_MS);
+        matchmakingService = new MatchmakingService(userRepository, callRepository, redisMatchmaking,
+                broadcastService, matchmakingWorker, callParticipantCache, mock(PresenceService.class),
+                new MatchmakingMetrics(meterRegistry, redisMatchmaking));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        matchmakingWorker.stop();
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void unconfirmedProposalsExpireAndOnlyAcceptedUsersReturnToTheQueue() throws Exception {
+        matchmakingService.joinQueue(1L, QueueShard.DEFAULT, Set.of());
+        matchmakingService.joinQueue(2L, QueueShard.DEFAULT, Set.of());
+        long firstEnqueuedAt = redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE).get(0).enqueuedAt();
+        assertThat(matchmakingWorker.matchBatch()).isEqualTo(1);
+
+        ArgumentCaptor<Map<String, Object>> proposal = ArgumentCaptor.captor();
+        verify(broadcastService).broadcastMatchProposed(eq(1L), proposal.capture());
+        Long reservationId = (Long) proposal.getValue().get("reservationId");
+        assertThat(proposal.getValue()).containsEntry("peerId", 2L).containsEntry("expiresInMs", LEASE_MS);
+
+        matchmakingService.acceptMatch(1L, reservationId);
+        assertThat(redisMatchmaking.expireReservations(System.currentTimeMillis(), 10)).isEmpty();
+
+        matchmakingWorker.expireReservations(System.currentTimeMillis() + LEASE_MS + 1);
+        assertThat(redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE))
+                .singleElement()
+                .satisfies(user -> {
+                    assertThat(user.userId()).isEqualTo(1L);
+                    assertThat(user.enqueuedAt()).isEqualTo(firstEnqueuedAt);
+                });
+        assertThatThrownBy(() -> matchmakingService.acceptMatch(2L, reservationId))
+                .isInstanceOf(IllegalStateException.class);
+
+        matchmakingService.joinQueue(3L, QueueShard.DEFAULT, Set.of());
+        assertThat(matchmakingWorker.matchBatch()).isEqualTo(1);
+        matchmakingService.leaveQueue(3L);
+        assertThat(redisMatchmaking.getQueueUsers(QueueShard.DEFAULT, 0, 10)).containsExactly(1L);
+        verify(callRepository, never()).save(any(CallEntity.class));
+        verify(broadcastService, never()).broadcastMatchFound(anyLong(), anyMap());
+        assertThat(meterRegistry.get("matchmaking.matches").counter().count()).isZero();
+    }
+
+    @Test
+    void acceptedMatchesAreMeasuredFromTheOriginalEnqueueTime() throws Exception {
+        long now = System.currentTimeMillis();
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(1L, now - 40_000));
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(2L, now - 20_000));
+        assertThat(matchmakingWorker.matchBatch()).isEqualTo(1);
+
+        ArgumentCaptor<Map<String, Object>> proposal = ArgumentCaptor.captor();
+        verify(broadcastService).broadcastMatchProposed(eq(1L), proposal.capture());
+        Long reservationId = (Long) proposal.getValue().get("reservationId");
+        matchmakingService.acceptMatch(1L, reservationId);
+        assertThat(meterRegistry.get("matchmaking.matches").counter().count()).isZero();
+
+        matchmakingService.acceptMatch(2L, reservationId);
+        assertThat(meterRegistry.get("matchmaking.matches").counter().count()).isEqualTo(1.0);
+        Timer timeToMatch = meterRegistry.get("matchmaking.time.to.match").tag("call_type", "VIDEO").timer();
+        assertThat(timeToMatch.count()).isEqualTo(2);
+        assertThat(timeToMatch.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(60_000);
+        assertThat(redisMatchmaking.getMatchStats()).isNotEmpty();
+    }
+
+    @Test
+    void activeCallIsLookedUpByUserWithoutScanningActiveCalls() throws Exception {
+        CallEntity call = matchAndAccept(1L, 2L);
+        when(callRepository.findById(call.getId())).thenReturn(Optional.of(call));
+
+        assertThat(redisMatchmaking.getActiveCallId(1L)).contains(call.getId());
+        assertThat(matchmakingService.getUserCallId(2L)).isEqualTo(call.getId());
+        assertThatThrownBy(() -> matchmakingService.joinQueue(1L, QueueShard.DEFAULT, Set.of()))
+                .isInstanceOf(IllegalStateException.class);
+
+        matchmakingService.cleanupUserOnDisconnect(2L);
+        assertThat(call.getStatus()).isEqualTo(CallEntity.CallStatus.COMPLETED);
+        assertThat(redisMatchmaking.getActiveCallId(1L)).isEmpty();
+        assertThat(redisMatchmaking.isUserInCall(1L)).isFalse();
+
+        redisMatchmaking.setActiveCall(call.getId(), 3L, 4L);
+        matchmakingService.joinQueue(3L, QueueShard.DEFAULT, Set.of());
+        assertThat(redisMatchmaking.getActiveCallId(3L)).isEmpty();
+        assertThat(redisMatchmaking.isInQueue(3L)).isTrue();
+
+        verify(callRepository, never()).findByStatus(any());
+        verify(callRepository, never()).findByUserIdAndStatus(anyLong(), any());
+    }
+
+    @Test
+    void acceptedCallsAreCachedUntilTheyEnd() throws Exception {
+        CallEntity call = matchAndAccept(1L, 2L);
+        verify(callParticipantCache).put(call);
+
+        when(callRepository.findById(call.getId())).thenReturn(Optional.of(call));
+        matchmakingService.endCall(call.getId(), 1L);
+        verify(callParticipantCache).evict(call.getId());
+    }
+
+    private CallEntity matchAndAccept(Long user1Id, Long user2Id) throws InterruptedException {
+        matchmakingService.joinQueue(user1Id, QueueShard.DEFAULT, Set.of());
+        matchmakingService.joinQueue(user2Id, QueueShard.DEFAULT, Set.of());
+        assertThat(matchmakingWorker.matchBatch()).isEqualTo(1);
+
+        ArgumentCaptor<Map<String, Object>> proposal = ArgumentCaptor.captor();
+        verify(broadcastService).broadcastMatchProposed(eq(user1Id), proposal.capture());
+        Long reservationId = (Long) proposal.getValue().get("reservationId");
+        matchmakingService.acceptMatch(user1Id, reservationId);
+        matchmakingService.acceptMatch(user2Id, reservationId);
+
+        ArgumentCaptor<CallEntity> call = ArgumentCaptor.forClass(CallEntity.class);
+        verify(callRepository).save(call.capture());
+        return call.getValue();
+    }
+}
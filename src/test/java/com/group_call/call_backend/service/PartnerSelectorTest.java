@@ -0,0 +1,76 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PartnerSelectorTest {
+
+    private static final QueueShard AUDIO_PT = QueueShard.of("audio", "pt-BR");
+    private static final long FALLBACK_MS = 60_000;
+
+    @Test
+    void usersWithInterestsWaitForSharedInterestsUntilFallback() {
+        PartnerSelector selector = new PartnerSelector(mock(RecentPartnerFilter.class), FALLBACK_MS, 0.5, 60_000);
+        List<QueuedUser> window = List.of(
+                new QueuedUser(1L, 1_000L),
+                new QueuedUser(2L, 2_000L, InterestIndex.normalize(List.of("Music", "games"))),
+                new QueuedUser(3L, 3_000L, InterestIndex.normalize(List.of("sports"))),
+                new QueuedUser(4L, 4_000L, InterestIndex.normalize(List.of("games", "music"))));
+
+        assertThat(selector.selectPairs(QueueShard.DEFAULT, window, 8, 4_000L))
+                .singleElement()
+                .satisfies(pair -> assertThat(pair).extracting(QueuedUser::userId).containsExactly(2L, 4L));
+
+        assertThat(selector.selectPairs(QueueShard.DEFAULT, window, 8, 4_000L + FALLBACK_MS))
+                .hasSize(2)
+                .satisfies(pairs -> {
+                    assertThat(pairs.get(0)).extracting(QueuedUser::userId).containsExactly(1L, 2L);
+                    assertThat(pairs.get(1)).extracting(QueuedUser::userId).containsExactly(3L, 4L);
+                });
+    }
+
+    @Test
+    void shardsAreSelectedWithoutWaitingForEachOther() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecentPartnerFilter recentPartnerFilter = mock(RecentPartnerFilter.class);
+        // A seleção da partição padrão fica parada no meio, com o índice dela travado
+        when(recentPartnerFilter.mightHaveMet(eq(1L), anyLong())).thenAnswer(invocation -> {
+            blocked.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return false;
+        });
+        PartnerSelector selector = new PartnerSelector(recentPartnerFilter, 10_000, 0.5, 10_000);
+        Set<String> music = Set.of("music");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        CompletableFuture<List<QueuedUser[]>> stuck = CompletableFuture.supplyAsync(() -> selector.selectPairs(
+                QueueShard.DEFAULT, List.of(new QueuedUser(1L, 1L, music),
+                        new QueuedUser(2L, 2L, music)), 10, 3L), executor);
+        assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        List<QueuedUser[]> other = CompletableFuture.supplyAsync(() -> selector.selectPairs(
+                AUDIO_PT, List.of(new QueuedUser(3L, 1L, music),
+                        new QueuedUser(4L, 2L, music)), 10, 3L), executor).get(5, TimeUnit.SECONDS);
+        assertThat(other).singleElement()
+                .satisfies(pair -> assertThat(pair).extracting(QueuedUser::userId).containsExactly(3L, 4L));
+
+        release.countDown();
+        assertThat(stuck.get(10, TimeUnit.SECONDS)).hasSize(1);
+        executor.shutdown();
+    }
+}
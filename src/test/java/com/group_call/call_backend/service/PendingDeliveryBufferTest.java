@@ -0,0 +1,47 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PendingDeliveryBufferTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void undeliveredMessagesWaitPerUserUntilTheyArriveOrExpire() {
+        PendingDeliveryBuffer buffer = new PendingDeliveryBuffer(meterRegistry, 2, 2, 1_000);
+        WebSocketMessage chat1 = new WebSocketMessage(WebSocketMessageType.CHAT_MESSAGE, 1L, "/queue/chat", Map.of("n", 1));
+        WebSocketMessage chat2 = new WebSocketMessage(WebSocketMessageType.CHAT_MESSAGE, 1L, "/queue/chat", Map.of("n", 2));
+        WebSocketMessage match = new WebSocketMessage(WebSocketMessageType.MATCH_FOUND, 1L, "/queue/match-found", Map.of("callId", 10));
+
+        // Limite por usuário: a mais antiga sai
+        buffer.add(chat1, 0);
+        buffer.add(chat2, 100);
+        buffer.add(match, 200);
+        assertThat(meterRegistry.get("websocket.pending.dropped").counter().count()).isEqualTo(1.0);
+
+        // Inscrição em um destino entrega só as dele
+        assertThat(buffer.drain(1L, "/queue/match-found")).containsExactly(match);
+        assertThat(buffer.drain(1L, "/queue/match-found")).isEmpty();
+
+        // Limite de usuários: o mais antigo sai inteiro
+        buffer.add(new WebSocketMessage(WebSocketMessageType.CHAT_MESSAGE, 2L, "/queue/chat", Map.of()), 300);
+        buffer.add(new WebSocketMessage(WebSocketMessageType.CHAT_MESSAGE, 3L, "/queue/chat", Map.of()), 400);
+        assertThat(buffer.drain(1L)).isEmpty();
+        assertThat(meterRegistry.get("websocket.pending.dropped").counter().count()).isEqualTo(2.0);
+        assertThat(buffer.size()).isEqualTo(2);
+
+        // O varredor só descarta o que venceu
+        assertThat(buffer.sweep(1_300)).isEqualTo(1);
+        assertThat(buffer.drain(2L)).isEmpty();
+        assertThat(buffer.drain(3L)).hasSize(1);
+        assertThat(meterRegistry.get("websocket.pending.expired").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("websocket.pending.users").gauge().value()).isZero();
+    }
+}
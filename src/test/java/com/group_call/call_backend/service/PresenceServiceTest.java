@@ -0,0 +1,80 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PresenceServiceTest {
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private UserRepository userRepository;
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, String> stringRedisTemplate = new RedisConfig().customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        userRepository = mock(UserRepository.class);
+        presenceService = new PresenceService(stringRedisTemplate, userRepository, new SimpleMeterRegistry(), 30_000, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void presenceLeasesAreRenewedByActivityAndLapseWithoutIt() {
+        long now = System.currentTimeMillis();
+        for (long userId = 1; userId <= 5; userId++) {
+            presenceService.touch(userId);
+        }
+        presenceService.flush(now);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> online = ArgumentCaptor.forClass(Collection.class);
+        verify(userRepository).updateOnlineStatus(online.capture(), eq(true));
+        assertThat(online.getValue()).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L);
+        assertThat(presenceService.getOnlineUsers(List.of(1L, 2L, 6L))).containsExactlyInAnyOrder(1L, 2L);
+
+        presenceService.touch(1L);
+        presenceService.loggedOut(2L);
+        presenceService.flush(now + 20_000);
+        presenceService.flush(now + 40_000);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> offline = ArgumentCaptor.forClass(Collection.class);
+        verify(userRepository, times(2)).updateOnlineStatus(offline.capture(), eq(false));
+        assertThat(offline.getAllValues().get(0)).containsExactly(2L);
+        assertThat(offline.getAllValues().get(1)).containsExactlyInAnyOrder(3L, 4L, 5L);
+        assertThat(presenceService.getOnlineUsers(List.of(1L, 2L, 3L))).containsExactly(1L);
+        verify(userRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,90 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.websocket.message.JacksonWebSocketMessageCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PubSubMessageTransportTest {
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisTemplate<String, String> stringRedisTemplate;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new RedisConfig().customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void messagesAreRoutedOnlyToTheNodeOwningTheUser() throws Exception {
+        UserNodeRegistry nodeA = new UserNodeRegistry(stringRedisTemplate, "node-a");
+        UserNodeRegistry nodeB = new UserNodeRegistry(stringRedisTemplate, "node-b");
+        JacksonWebSocketMessageCodec codec = new JacksonWebSocketMessageCodec("smile");
+        PendingDeliveryBuffer pendingBuffer = new PendingDeliveryBuffer(meterRegistry, 100, 10, 5_000);
+        PubSubMessageTransport transportA = new PubSubMessageTransport(stringRedisTemplate, nodeA,
+                new RedisMessageListenerContainer(), codec, pendingBuffer);
+        PubSubMessageTransport transportB = new PubSubMessageTransport(stringRedisTemplate, nodeB,
+                new RedisMessageListenerContainer(), codec, pendingBuffer);
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.afterPropertiesSet();
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        container.addMessageListener((message, pattern) -> received.add(new String(message.getBody())),
+                new ChannelTopic(transportB.getNodeChannel()));
+        container.start();
+        try {
+            nodeB.register(1L);
+            for (int attempt = 0; attempt < 50 && !transportA.publish(1L, "hello".getBytes()); attempt++) {
+                nodeB.register(1L);
+                Thread.sleep(20);
+            }
+            assertThat(nodeA.getNode(1L)).contains("node-b");
+            for (int attempt = 0; attempt < 50 && received.isEmpty(); attempt++) {
+                Thread.sleep(20);
+            }
+
+            nodeA.unregister(1L);
+            assertThat(nodeA.getNode(1L)).contains("node-b");
+
+            // Instância sem assinantes: cai no canal global e o registro velho é descartado
+            nodeA.register(2L);
+            assertThat(transportB.publish(2L, "bye".getBytes())).isFalse();
+            assertThat(nodeB.getNode(2L)).isEmpty();
+            assertThat(transportA.publish(3L, "unknown".getBytes())).isFalse();
+
+            nodeB.unregister(1L);
+            assertThat(nodeA.getNode(1L)).isEmpty();
+        } finally {
+            container.destroy();
+        }
+        assertThat(received).contains("hello").doesNotContain("bye", "unknown");
+    }
+}
@@ -0,0 +1,105 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import com.group_call.call_backend.websocket.LocalSessionRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class QueueStatusPublisherTest {
+
+    private static final QueueShard AUDIO_PT = QueueShard.of("audio", "pt-BR");
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private SimpleMeterRegistry meterRegistry;
+    private MatchmakingMetrics matchmakingMetrics;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+        meterRegistry = new SimpleMeterRegistry();
+        matchmakingMetrics = new MatchmakingMetrics(meterRegistry, redisMatchmaking);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void matchesAreMeasuredAndQueuedUsersReceiveAnEstimate() throws Exception {
+        LocalSessionRegistry localSessionRegistry = new LocalSessionRegistry();
+        for (long userId = 5; userId <= 7; userId++) {
+            localSessionRegistry.connected(userId, "session-" + userId);
+        }
+        // Sessão já encerrada nesta instância: o usuário não recebe status daqui
+        localSessionRegistry.connected(8L, "session-8");
+        localSessionRegistry.disconnected(8L, "session-8");
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        QueueStatusPublisher publisher = new QueueStatusPublisher(redisMatchmaking, matchmakingMetrics,
+                localSessionRegistry, messagingTemplate);
+
+        publisher.publish();
+        long now = System.currentTimeMillis();
+        matchmakingMetrics.recordMatches(QueueShard.DEFAULT, List.of(
+                new QueuedUser[]{new QueuedUser(1L, now - 400), new QueuedUser(2L, now - 300)},
+                new QueuedUser[]{new QueuedUser(3L, now - 200), new QueuedUser(4L, now - 100)}), now);
+
+        assertThat(meterRegistry.get("matchmaking.time.to.match").tag("call_type", "VIDEO").timer().count())
+                .isEqualTo(4);
+        assertThat(meterRegistry.get("matchmaking.matches").counter().count()).isEqualTo(2.0);
+
+        redisMatchmaking.joinQueue(5L, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.joinQueue(6L, AUDIO_PT, Set.of());
+        redisMatchmaking.joinQueue(8L, QueueShard.of("audio", "en-US"), Set.of());
+        Thread.sleep(20);
+        publisher.publish();
+
+        assertThat(meterRegistry.get("matchmaking.queue.depth").gauge().value()).isEqualTo(3.0);
+
+        ArgumentCaptor<Object> status = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("5"), eq("/queue/status"), status.capture());
+        assertThat((Map<String, Object>) status.getValue())
+                .containsEntry("status", "waiting")
+                .containsEntry("position", 1L)
+                .extractingByKey("estimatedWaitSeconds").isNotNull();
+
+        verify(messagingTemplate).convertAndSendToUser(eq("6"), eq("/queue/status"), status.capture());
+        assertThat((Map<String, Object>) status.getValue())
+                .containsEntry("position", 1L)
+                .containsEntry("estimatedWaitSeconds", null);
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+}
@@ -0,0 +1,46 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RecentPartnerFilterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recentPartnersAreNotMatchedAgain() {
+        RedisTemplate<String, String> stringRedisTemplate = mock(RedisTemplate.class);
+        RecentPartnerFilter recentPartnerFilter = new RecentPartnerFilter(stringRedisTemplate,
+                new RedisMessageListenerContainer(), 600_000, 10_000);
+        PartnerSelector selector = new PartnerSelector(recentPartnerFilter, 60_000, 0.5, 60_000);
+
+        recentPartnerFilter.remember(List.of(
+                new QueuedUser[]{new QueuedUser(1L, 0L), new QueuedUser(4L, 0L)},
+                new QueuedUser[]{new QueuedUser(3L, 0L), new QueuedUser(2L, 0L)}));
+        assertThat(recentPartnerFilter.mightHaveMet(4L, 1L)).isTrue();
+        assertThat(recentPartnerFilter.mightHaveMet(2L, 3L)).isTrue();
+        assertThat(recentPartnerFilter.mightHaveMet(1L, 5L)).isFalse();
+        verify(stringRedisTemplate).convertAndSend("matchmaking:recent_partners", "1:4,3:2");
+
+        Set<String> music = InterestIndex.normalize(List.of("music"));
+        List<QueuedUser> window = List.of(
+                new QueuedUser(4L, 1_000L),
+                new QueuedUser(1L, 2_000L),
+                new QueuedUser(5L, 3_000L),
+                new QueuedUser(3L, 4_000L, music),
+                new QueuedUser(2L, 5_000L, music),
+                new QueuedUser(6L, 6_000L, music));
+
+        assertThat(selector.selectPairs(QueueShard.DEFAULT, window, 8, 6_000L))
+                .extracting(pair -> Set.of(pair[0].userId(), pair[1].userId()))
+                .containsExactly(Set.of(4L, 5L), Set.of(3L, 6L));
+    }
+}
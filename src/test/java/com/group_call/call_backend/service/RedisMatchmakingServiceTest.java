@@ -0,0 +1,103 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisMatchmakingServiceTest {
+
+    private static final int WINDOW_SIZE = 32;
+    private static final QueueShard AUDIO_PT = QueueShard.of("audio", "pt-BR");
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void claimPairsOnlyTakesPairsThatAreStillWaiting() {
+        redisMatchmaking.joinQueue(1L, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.joinQueue(1L, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.joinQueue(1L, AUDIO_PT, Set.of());
+
+        assertThat(redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE))
+                .extracting(QueuedUser::userId).containsExactly(1L);
+        assertThat(redisMatchmaking.getQueueSize()).isEqualTo(1L);
+
+        redisMatchmaking.joinQueue(2L, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.joinQueue(3L, QueueShard.DEFAULT, Set.of());
+        List<QueuedUser> window = redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE);
+        redisMatchmaking.leaveQueue(3L);
+
+        List<QueuedUser[]> claimed = redisMatchmaking.claimPairs(QueueShard.DEFAULT, List.of(
+                new QueuedUser[]{window.get(0), window.get(1)},
+                new QueuedUser[]{window.get(2), new QueuedUser(4L, 0L)}));
+
+        assertThat(claimed)
+                .singleElement()
+                .satisfies(pair -> assertThat(pair).extracting(QueuedUser::userId).containsExactly(1L, 2L));
+        assertThat(redisMatchmaking.getQueueSize()).isZero();
+        assertThat(redisMatchmaking.isInQueue(1L)).isFalse();
+    }
+
+    @Test
+    void requeueKeepsOriginalPosition() {
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(5L, 1_000L));
+        redisMatchmaking.joinQueue(6L, QueueShard.DEFAULT, Set.of());
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(4L, 500L));
+
+        assertThat(redisMatchmaking.getQueueUsers(QueueShard.DEFAULT, 0, 10)).containsExactly(4L, 5L, 6L);
+        assertThat(redisMatchmaking.getQueueUsers(QueueShard.DEFAULT, 1, 1)).containsExactly(5L);
+
+        redisMatchmaking.leaveQueue(5L);
+
+        assertThat(redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE))
+                .extracting(QueuedUser::userId).containsExactly(4L, 6L);
+    }
+
+    @Test
+    void longWaitingUsersAgeIntoTheWiderShard() {
+        QueueShard audioAny = AUDIO_PT.wider();
+        redisMatchmaking.requeue(AUDIO_PT, new QueuedUser(7L, 1_000L));
+        redisMatchmaking.joinQueue(8L, AUDIO_PT, Set.of());
+        redisMatchmaking.requeue(audioAny, new QueuedUser(9L, 2_000L));
+
+        assertThat(redisMatchmaking.ageShard(AUDIO_PT, 1_500L, 10)).isEqualTo(1L);
+        assertThat(redisMatchmaking.getQueueUsers(AUDIO_PT, 0, 10)).containsExactly(8L);
+        assertThat(redisMatchmaking.getActiveShards()).contains(AUDIO_PT, audioAny);
+
+        assertThat(redisMatchmaking.peekQueue(audioAny, WINDOW_SIZE))
+                .extracting(QueuedUser::userId).containsExactly(7L, 9L);
+    }
+}
@@ -0,0 +1,55 @@
+package com.group_call.call_backend.service;
+
+import com.group_call.call_backend.service.MessageTransport.Outbound;
+import com.group_call.call_backend.service.RedisMessagePublisher.OverflowPolicy;
+import com.group_call.call_backend.service.RedisMessagePublisher.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class RedisMessagePublisherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void fullQueuesShedLowPriorityMessagesAndNeverDropCriticalOnes() throws Exception {
+        MessageTransport transport = mock(MessageTransport.class);
+        List<List<Outbound>> batches = new ArrayList<>();
+        doAnswer(invocation -> batches.add(List.copyOf(invocation.<List<Outbound>>getArgument(0))))
+                .when(transport).send(anyList());
+        RedisMessagePublisher publisher = new RedisMessagePublisher(transport, meterRegistry, 2, 16, 1,
+                OverflowPolicy.DROP_NEWEST);
+
+        for (long userId = 1; userId <= 3; userId++) {
+            publisher.publish(userId, ("typing-" + userId).getBytes(), Priority.LOW);
+            publisher.publish(userId, ("chat-" + userId).getBytes(), Priority.NORMAL);
+            publisher.publish(userId, ("match-" + userId).getBytes(), Priority.CRITICAL);
+        }
+
+        // Digitação: a mais antiga sai; chat: a nova sai; partida: publicada na hora
+        assertThat(meterRegistry.get("websocket.publisher.dropped").tag("priority", "LOW").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("websocket.publisher.dropped").tag("priority", "NORMAL").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.find("websocket.publisher.dropped").tag("priority", "CRITICAL").counter()).isNull();
+        assertThat(meterRegistry.get("websocket.publisher.caller.runs").counter().count()).isEqualTo(1.0);
+        assertThat(batches).singleElement()
+                .satisfies(batch -> assertThat(new String(batch.get(0).message())).isEqualTo("match-3"));
+
+        publisher.start();
+        publisher.stop();
+
+        List<String> sent = batches.stream().skip(1).flatMap(List::stream)
+                .map(outbound -> new String(outbound.message())).toList();
+        assertThat(sent).containsExactly("match-1", "match-2", "chat-1", "chat-2", "typing-2", "typing-3");
+        assertThat(meterRegistry.get("websocket.publisher.published").counter().count()).isEqualTo(7.0);
+        assertThat(meterRegistry.get("websocket.publisher.queue.size").tag("priority", "LOW").gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,114 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.repository.CallRatingRepository;
+import com.group_call.call_backend.service.RedisMatchmakingService.QueuedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReputationServiceTest {
+
+    private static final int WINDOW_SIZE = 32;
+    private static final long RELAX_MS = 60_000;
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private ReputationService reputationService;
+    private CallRatingRepository callRatingRepository;
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+        callRatingRepository = mock(CallRatingRepository.class);
+        reputationService = new ReputationService(stringRedisTemplate, callRatingRepository);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void ratedUsersArePairedWithinTheirReputationBand() {
+        PartnerSelector partnerSelector = new PartnerSelector(mock(RecentPartnerFilter.class), 60_000, 0.5, RELAX_MS);
+
+        // Antes da carga inicial começar o incremento fica para ela, que lê o banco
+        reputationService.addRating(1L, 1);
+        reputationService.backfill();
+        reputationService.addRating(1L, 5);
+        reputationService.addRating(2L, 1);
+        reputationService.addRating(2L, 2);
+        reputationService.addRating(3L, 4);
+        reputationService.addRating(3L, 5);
+        reputationService.changeRating(2L, 2, 1);
+
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(1L, 1_000L));
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(2L, 2_000L));
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(3L, 3_000L));
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(4L, 4_000L));
+
+        List<QueuedUser> window = redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE);
+        assertThat(window).extracting(QueuedUser::reputation).containsExactly(5.0, 1.0, 4.5, Double.NaN);
+
+        assertThat(partnerSelector.selectPairs(QueueShard.DEFAULT, window, 8, 4_000L))
+                .hasSize(2)
+                .satisfies(pairs -> {
+                    assertThat(pairs.get(0)).extracting(QueuedUser::userId).containsExactly(1L, 3L);
+                    assertThat(pairs.get(1)).extracting(QueuedUser::userId).containsExactly(2L, 4L);
+                });
+
+        reputationService.removeRating(1L, 5);
+        assertThat(redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE))
+                .extracting(QueuedUser::reputation).containsExactly(Double.NaN, 1.0, 4.5, Double.NaN);
+        assertThat(partnerSelector.selectPairs(QueueShard.DEFAULT, window.subList(0, 2), 8, 4_000L)).isEmpty();
+        assertThat(partnerSelector.selectPairs(QueueShard.DEFAULT, window.subList(0, 2), 8, 1_000L + 7 * RELAX_MS))
+                .hasSize(1);
+    }
+
+    @Test
+    void ratingsMadeDuringTheBackfillAreAddedToTheLoadedTotals() {
+        // As avaliações chegam enquanto a consulta agregada ainda está rodando
+        when(callRatingRepository.sumRatingsReceivedAsUser1()).thenAnswer(invocation -> {
+            reputationService.addRating(1L, 5);
+            reputationService.addRating(2L, 4);
+            reputationService.changeRating(3L, 1, 3);
+            return List.<Object[]>of(new Object[]{1L, 3L, 1L}, new Object[]{3L, 1L, 1L});
+        });
+        when(callRatingRepository.sumRatingsReceivedAsUser2()).thenReturn(List.of());
+
+        reputationService.backfill();
+        reputationService.addRating(2L, 2);
+
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(1L, 1_000L));
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(2L, 2_000L));
+        redisMatchmaking.requeue(QueueShard.DEFAULT, new QueuedUser(3L, 3_000L));
+        assertThat(redisMatchmaking.peekQueue(QueueShard.DEFAULT, WINDOW_SIZE))
+                .extracting(QueuedUser::reputation).containsExactly(4.0, 3.0, 3.0);
+        assertThat(stringRedisTemplate.hasKey("reputation:pending_sum")).isFalse();
+        assertThat(stringRedisTemplate.hasKey("reputation:pending_count")).isFalse();
+    }
+}
@@ -0,0 +1,88 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.entity.CallEntity;
+import com.group_call.call_backend.repository.CallRepository;
+import com.group_call.call_backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StaleCallReaperTest {
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisMatchmakingService redisMatchmaking;
+    private CallRepository callRepository;
+    private CallParticipantCache callParticipantCache;
+    private PresenceService presenceService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        RedisTemplate<String, String> stringRedisTemplate = redisConfig.customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+
+        redisMatchmaking = new RedisMatchmakingService(stringRedisTemplate);
+        callRepository = mock(CallRepository.class);
+        callParticipantCache = new CallParticipantCache(callRepository, stringRedisTemplate,
+                new RedisMessageListenerContainer(), 1_000);
+        presenceService = new PresenceService(stringRedisTemplate, mock(UserRepository.class), meterRegistry, 30_000, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void callsWithoutConnectedParticipantsAreReapedInBulk() {
+        redisMatchmaking.setActiveCall(10L, 1L, 2L);
+        redisMatchmaking.setActiveCall(11L, 3L, 4L);
+        presenceService.touch(3L);
+        presenceService.flush(System.currentTimeMillis());
+        when(callRepository.findParticipantsByStatusStartedBefore(eq(CallEntity.CallStatus.ACTIVE), any(), eq(0L), any()))
+                .thenReturn(List.of(new Object[]{10L, 1L, 2L}, new Object[]{11L, 3L, 4L}));
+        when(callRepository.completeActiveCalls(anyCollection(), any()))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).size());
+
+        StaleCallReaper reaper = new StaleCallReaper(callRepository, redisMatchmaking, callParticipantCache,
+                presenceService, meterRegistry, 60_000, 500);
+        assertThat(reaper.reapStaleCalls(LocalDateTime.now())).isEqualTo(1);
+
+        verify(callRepository).completeActiveCalls(eq(List.of(10L)), any());
+        verify(callRepository, never()).save(any());
+        assertThat(redisMatchmaking.isUserInCall(1L)).isFalse();
+        assertThat(redisMatchmaking.getActiveCallId(2L)).isEmpty();
+        assertThat(redisMatchmaking.isUserInCall(4L)).isTrue();
+        assertThat(redisMatchmaking.getActiveCallId(3L)).contains(11L);
+        assertThat(meterRegistry.get("calls.reaped").counter().count()).isEqualTo(1.0);
+    }
+}
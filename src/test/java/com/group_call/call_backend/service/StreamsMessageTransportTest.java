@@ -0,0 +1,160 @@
+package com.group_call.call_backend.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.group_call.call_backend.config.RedisConfig;
+import com.group_call.call_backend.websocket.message.JacksonWebSocketMessageCodec;
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamsMessageTransportTest {
+
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redisServer = RedisServer.newRedisServer().start();
+        connectionFactory = new JedisConnectionFactory(
+                new RedisStandaloneConfiguration(redisServer.getHost(), redisServer.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new RedisConfig().customStringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void streamMessagesForDisconnectedUsersAreKeptInTheMailboxUntilTheyReconnect() {
+        UserNodeRegistry nodeA = new UserNodeRegistry(stringRedisTemplate, "node-a");
+        UserNodeRegistry nodeB = new UserNodeRegistry(stringRedisTemplate, "node-b");
+        JacksonWebSocketMessageCodec codec = new JacksonWebSocketMessageCodec("json");
+        StreamsMessageTransport transportA = new StreamsMessageTransport(stringRedisTemplate, nodeA, codec,
+                1_000, 100, 100, 200, 5_000, 100, 60_000, 15_000);
+        StreamsMessageTransport transportB = new StreamsMessageTransport(stringRedisTemplate, nodeB, codec,
+                1_000, 100, 100, 200, 5_000, 100, 60_000, 15_000);
+        byte[] message = codec.encode(new WebSocketMessage(WebSocketMessageType.MATCH_FOUND, 1L,
+                "/queue/match-found", Map.of("callId", 10)));
+
+        // Usuário sem instância: a mensagem fica na caixa dele
+        transportA.send(List.of(new MessageTransport.Outbound(1L, message)));
+        assertThat(stringRedisTemplate.opsForStream().size(StreamsMessageTransport.MAILBOX_PREFIX + 1)).isEqualTo(1L);
+
+        // Registrado em instância viva: vai para o stream dela
+        transportB.heartbeat();
+        nodeB.register(1L);
+        assertThat(transportA.reroute(1L, message, true)).isEqualTo(StreamsMessageTransport.ROUTED);
+        assertThat(stringRedisTemplate.opsForStream().size(StreamsMessageTransport.STREAM_PREFIX + "node-b")).isEqualTo(1L);
+
+        // Ainda registrado na própria instância: mantém pendente até o prazo
+        assertThat(transportB.reroute(1L, message, true)).isEqualTo(StreamsMessageTransport.KEPT);
+        assertThat(transportB.reroute(1L, message, false)).isEqualTo(StreamsMessageTransport.PARKED);
+
+        // Ao conectar, a caixa é reproduzida no stream da instância
+        transportB.userConnected(1L);
+        assertThat(stringRedisTemplate.hasKey(StreamsMessageTransport.MAILBOX_PREFIX + 1)).isFalse();
+        assertThat(stringRedisTemplate.opsForStream().size(StreamsMessageTransport.STREAM_PREFIX + "node-b")).isEqualTo(3L);
+
+        // Instância sem marca de vida: registro descartado e mensagem na caixa
+        nodeA.register(2L);
+        assertThat(transportB.reroute(2L, message, true)).isEqualTo(StreamsMessageTransport.PARKED);
+        assertThat(nodeB.getNode(2L)).isEmpty();
+    }
+
+    @Test
+    void readerAcknowledgesDeliveredMessagesAndWalksThePendingListPageByPage() throws Exception {
+        RedisConnection connection = mock(RedisConnection.class, RETURNS_DEEP_STUBS);
+        RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        RedisTemplate<String, String> template = new RedisConfig().customStringRedisTemplate(connectionFactory);
+        template.afterPropertiesSet();
+
+        JacksonWebSocketMessageCodec codec = new JacksonWebSocketMessageCodec("json");
+        ByteRecord delivered = record(codec, 1L);
+        ByteRecord waiting = record(codec, 2L);
+        List<String> pendingOffsets = new CopyOnWriteArrayList<>();
+        AtomicBoolean firstRead = new AtomicBoolean(true);
+        when(connection.streamCommands().xReadGroup(any(), any(), any(StreamOffset[].class))).thenAnswer(invocation -> {
+            String offset = invocation.<StreamOffset<byte[]>>getArgument(2).getOffset().getOffset();
+            if (">".equals(offset)) {
+                if (firstRead.getAndSet(false)) {
+                    return List.of(delivered, waiting);
+                }
+                Thread.sleep(5);
+                return List.of();
+            }
+            // Página de pendentes com uma entrada: a próxima leitura continua depois dela
+            pendingOffsets.add(offset);
+            return "0".equals(offset) ? List.of(waiting) : List.of();
+        });
+        // O usuário 2 ainda está registrado aqui: a mensagem espera sem script
+        when(connection.hMGet(any(), any(byte[][].class)))
+                .thenReturn(List.of("node-a".getBytes(StandardCharsets.UTF_8)));
+        List<RecordId> acked = new CopyOnWriteArrayList<>();
+        when(connection.streamCommands().xAck(any(), eq("websocket"), any(RecordId[].class))).thenAnswer(invocation -> {
+            for (int i = 2; i < invocation.getArguments().length; i++) {
+                acked.add(invocation.getArgument(i));
+            }
+            return (long) invocation.getArguments().length - 2;
+        });
+
+        StreamsMessageTransport transport = new StreamsMessageTransport(template,
+                new UserNodeRegistry(template, "node-a"), codec, 1_000, 1, 100, 1, 5_000, 100, 60_000, 15_000);
+        transport.start(message -> message.getTargetUserId() == 1L);
+
+        for (int attempt = 0; attempt < 250 && (acked.isEmpty() || pendingOffsets.size() < 3); attempt++) {
+            Thread.sleep(20);
+        }
+        transport.stop();
+
+        assertThat(acked).containsExactly(delivered.getId());
+        assertThat(pendingOffsets.subList(0, 3)).containsExactly("0", waiting.getId().getValue(), "0");
+        verify(connection, never()).evalSha(any(String.class), any(), anyInt(), any(byte[][].class));
+    }
+
+    private static ByteRecord record(JacksonWebSocketMessageCodec codec, Long userId) {
+        byte[] body = codec.encode(new WebSocketMessage(WebSocketMessageType.CHAT_MESSAGE, userId,
+                "/queue/chat", Map.of("message", "oi")));
+        return StreamRecords.newRecord()
+                .in(bytes(StreamsMessageTransport.STREAM_PREFIX + "node-a"))
+                .withId(RecordId.of(System.currentTimeMillis(), userId))
+                .ofBytes(Map.of(bytes("u"), bytes(userId.toString()), bytes("m"), body));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,32 @@
+package com.group_call.call_backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypingIndicatorCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void typingFramesAreCoalescedToStateChangesAndPeriodicRefreshes() {
+        TypingIndicatorCoalescer coalescer = new TypingIndicatorCoalescer(meterRegistry, 1_000, 5_000);
+
+        assertThat(coalescer.shouldForward(1L, 7L, false, 0)).isFalse();
+        assertThat(coalescer.shouldForward(1L, 7L, true, 0)).isTrue();
+        assertThat(coalescer.shouldForward(1L, 7L, true, 500)).isFalse();
+        assertThat(coalescer.shouldForward(1L, 8L, true, 500)).isTrue();
+        assertThat(coalescer.shouldForward(1L, 7L, true, 1_000)).isTrue();
+        assertThat(coalescer.shouldForward(1L, 7L, false, 1_100)).isTrue();
+        assertThat(coalescer.shouldForward(1L, 7L, false, 1_200)).isFalse();
+
+        // Quem parou sem avisar é esquecido e o próximo frame volta a passar
+        coalescer.sweep(5_500);
+        assertThat(meterRegistry.get("websocket.typing.active").gauge().value()).isZero();
+        assertThat(coalescer.shouldForward(1L, 8L, true, 5_600)).isTrue();
+
+        assertThat(meterRegistry.get("websocket.typing.forwarded").counter().count()).isEqualTo(5.0);
+        assertThat(meterRegistry.get("websocket.typing.coalesced").counter().count()).isEqualTo(3.0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.group_call.call_backend.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboundBackpressureInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void slowSessionsShedTypingFirstKeepSignalingAndAreEvicted() throws Exception {
+        OutboundBackpressureInterceptor backpressure = new OutboundBackpressureInterceptor(meterRegistry, 1, 2, 4);
+        WebSocketHandler handler = mock(WebSocketHandler.class);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        backpressure.decorate(handler).afterConnectionEstablished(session);
+        ArgumentCaptor<WebSocketSession> counted = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler).afterConnectionEstablished(counted.capture());
+
+        assertThat(backpressure.preSend(outbound("/queue/chat-users1"), null)).isNotNull();
+        assertThat(backpressure.preSend(outbound("/queue/typing-users1"), null)).isNull();
+        assertThat(backpressure.preSend(outbound("/queue/chat-users1"), null)).isNotNull();
+        assertThat(backpressure.preSend(outbound("/queue/chat-users1"), null)).isNull();
+        assertThat(backpressure.preSend(outbound("/queue/webrtc-signal-users1"), null)).isNotNull();
+        assertThat(backpressure.getQueueDepths()).containsEntry("s1", 3);
+
+        // Frame escrito no socket libera a vaga
+        counted.getValue().sendMessage(new TextMessage("MESSAGE\ndestination:/user/queue/chat\n\n{}\u0000"));
+        counted.getValue().sendMessage(new TextMessage("\n"));
+        assertThat(backpressure.getQueueDepths()).containsEntry("s1", 2);
+
+        assertThat(backpressure.preSend(outbound("/queue/call-ended-users1"), null)).isNotNull();
+        assertThat(backpressure.preSend(outbound("/queue/webrtc-signal-users1"), null)).isNotNull();
+        assertThat(backpressure.preSend(outbound("/queue/webrtc-signal-users1"), null)).isNull();
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+
+        assertThat(meterRegistry.get("websocket.outbound.dropped").tag("priority", "LOW").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("websocket.outbound.dropped").tag("priority", "NORMAL").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("websocket.outbound.evicted").counter().count()).isEqualTo(1.0);
+    }
+
+    private static Message<byte[]> outbound(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("s1");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
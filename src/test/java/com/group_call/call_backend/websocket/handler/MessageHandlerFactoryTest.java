@@ -0,0 +1,42 @@
+package com.group_call.call_backend.websocket.handler;
+
+import com.group_call.call_backend.websocket.message.WebSocketMessage;
+import com.group_call.call_backend.websocket.message.WebSocketMessageType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class MessageHandlerFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void messagesAreDispatchedByTypeAndDuplicateHandlersAreRejected() {
+        MessageHandlerFactory handlers = new MessageHandlerFactory(
+                List.of(new ChatMessageHandler(), new TypingIndicatorHandler()), meterRegistry);
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+
+        handlers.processMessage(new WebSocketMessage(WebSocketMessageType.TYPING_INDICATOR, 7L, "/queue/typing",
+                Map.of("isTyping", true)), template);
+        handlers.processMessage(new WebSocketMessage(WebSocketMessageType.ERROR, 7L, "/queue/error",
+                Map.of("error", "x")), template);
+
+        verify(template).convertAndSendToUser("7", "/queue/typing", Map.of("isTyping", true));
+        verifyNoMoreInteractions(template);
+        assertThat(meterRegistry.get("websocket.delivery").tag("type", "TYPING_INDICATOR").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("websocket.delivery.latency").tag("type", "CHAT_MESSAGE").timer().count())
+                .isZero();
+        assertThatThrownBy(() -> new MessageHandlerFactory(List.of(new ChatMessageHandler(), new ChatMessageHandler()),
+                meterRegistry)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,27 @@
+package com.group_call.call_backend.websocket.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JacksonWebSocketMessageCodecTest {
+
+    @Test
+    void smileMessagesAreSmallerAndReadableByJsonNodes() {
+        WebSocketMessage message = new WebSocketMessage(WebSocketMessageType.CHAT_MESSAGE, 7L, "/queue/chat",
+                Map.of("callId", 3, "senderName", "user-1", "message", "olá", "sent", true));
+        JacksonWebSocketMessageCodec smile = new JacksonWebSocketMessageCodec("smile");
+        JacksonWebSocketMessageCodec json = new JacksonWebSocketMessageCodec("json");
+
+        byte[] compact = smile.encode(message);
+        byte[] verbose = json.encode(message);
+        assertThat(compact.length).isLessThan(verbose.length);
+
+        assertThat(json.decode(compact)).isEqualTo(message);
+        assertThat(smile.decode(verbose)).isEqualTo(message);
+        assertThatThrownBy(() -> new JacksonWebSocketMessageCodec("xml")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,31 @@
+package com.group_call.call_backend.websocket.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebSocketMessageFactoryTest {
+
+    @Test
+    void factoryMessagesCarryTheNodeIdentityAndSequentialIds() {
+        WebSocketMessageFactory factory = new WebSocketMessageFactory("node-a");
+        WebSocketMessage first = factory.create(WebSocketMessageType.CHAT_MESSAGE, 7L, "/queue/chat", Map.of("n", 1));
+        WebSocketMessage second = factory.create(WebSocketMessageType.CHAT_MESSAGE, 7L, "/queue/chat", Map.of("n", 2));
+
+        assertThat(first.getServerId()).isEqualTo("node-a");
+        assertThat(first.getMessageId()).startsWith("node-a-").endsWith("-1");
+        assertThat(second.getMessageId()).endsWith("-2");
+        assertThat(first.getTimestamp()).isNull();
+        assertThat(first.getTargetUserName()).isEqualTo("7").isSameAs(first.getTargetUserName());
+
+        // O nome em cache acompanha o destinatário e não vai para o Redis
+        JacksonWebSocketMessageCodec json = new JacksonWebSocketMessageCodec("json");
+        assertThat(new String(json.encode(first))).doesNotContain("targetUserName");
+        WebSocketMessage decoded = json.decode(json.encode(first));
+        assertThat(decoded).isEqualTo(first);
+        decoded.setTargetUserId(8L);
+        assertThat(decoded.getTargetUserName()).isEqualTo("8");
+    }
+}